@@ -17,6 +17,10 @@ repositories {
 dependencies {
     compileOnly(libs.jetbrains.annotations)
     compileOnly(libs.jspecify)
+
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.platform.launcher)
 }
 
 hytale {
@@ -60,6 +64,10 @@ tasks.named<ProcessResources>("processResources") {
     inputs.properties(replaceProperties)
 }
 
+tasks.test {
+    useJUnitPlatform()
+}
+
 tasks.withType<Jar> {
     manifest {
         attributes["Specification-Title"] = rootProject.name
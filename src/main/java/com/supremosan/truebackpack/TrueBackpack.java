@@ -10,6 +10,9 @@ import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.storage.ChunkStore;
+import com.supremosan.truebackpack.commands.BackpackCodecBenchCommand;
+import com.supremosan.truebackpack.commands.BackpackStatsCommand;
+import com.supremosan.truebackpack.commands.BackpackVaultSweepCommand;
 import com.supremosan.truebackpack.commands.ReloadBackpackCommand;
 import com.supremosan.truebackpack.commands.SetBackpackModelCommand;
 import com.supremosan.truebackpack.commands.SetHelipackFuelCommand;
@@ -18,10 +21,14 @@ import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
 import com.supremosan.truebackpack.config.hat.HatConfigService;
 import com.supremosan.truebackpack.cosmetic.CosmeticPreference;
 import com.supremosan.truebackpack.data.BackpackContainerState;
+import com.supremosan.truebackpack.data.BackpackPlayerState;
+import com.supremosan.truebackpack.data.BackpackVault;
 import com.supremosan.truebackpack.events.BackpackDeathEvent;
 import com.supremosan.truebackpack.system.BackpackContainerSystem;
+import com.supremosan.truebackpack.system.BackpackContentsFlushSystem;
 import com.supremosan.truebackpack.system.HatDurabilitySystem;
 import com.supremosan.truebackpack.system.HelipackFlySystem;
+import com.supremosan.truebackpack.system.HelipackState;
 import com.supremosan.truebackpack.interactions.BackpackInteraction;
 import com.supremosan.truebackpack.listener.*;
 
@@ -63,13 +70,18 @@ public class TrueBackpack extends JavaPlugin {
 
         CosmeticListener.register(this);
         CosmeticPreference.register(this);
+        BackpackPlayerState.register(this);
+        HelipackState.register(this);
 
-        BackpackTooltipListener.register();
+        BackpackTooltipListener.register(this);
 
         this.getCommandRegistry().registerCommand(new ToggleCosmeticCommand());
         this.getCommandRegistry().registerCommand(new ReloadBackpackCommand());
         this.getCommandRegistry().registerCommand(new SetHelipackFuelCommand());
         this.getCommandRegistry().registerCommand(new SetBackpackModelCommand());
+        this.getCommandRegistry().registerCommand(new BackpackStatsCommand());
+        this.getCommandRegistry().registerCommand(new BackpackCodecBenchCommand());
+        this.getCommandRegistry().registerCommand(new BackpackVaultSweepCommand());
 
         this.getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, event -> {
             PlayerRef playerRef = event.getPlayerRef();
@@ -77,7 +89,7 @@ public class TrueBackpack extends JavaPlugin {
             String uuidStr = uuid.toString();
 
             BackpackTooltipListener.onPlayerLeave(uuid);
-            BackpackArmorListener.onPlayerRemove(uuidStr, null, null, null, null);
+            BackpackArmorListener.onPlayerDisconnect(playerRef);
             CosmeticListener.onPlayerLeave(uuidStr);
             HatArmorListener.onPlayerRemove(uuidStr);
             HatDurabilitySystem.onPlayerRemove(uuidStr);
@@ -98,10 +110,17 @@ public class TrueBackpack extends JavaPlugin {
         this.getChunkStoreRegistry().registerSystem(new BackpackContainerSystem());
 
         BackpackArmorListener.register(this);
+        BackpackContentsFlushSystem.register(this);
         QuiverListener.register(this);
         BackpackNestingListener.register(this);
         HatArmorListener.register(this);
 
         LOGGER.atInfo().log("[TrueBackpack] Ready");
     }
+
+    @Override
+    protected void shutdown() {
+        BackpackContentsFlushSystem.flushAll();
+        BackpackVault.close();
+    }
 }
\ No newline at end of file
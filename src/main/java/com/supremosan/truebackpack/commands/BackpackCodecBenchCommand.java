@@ -0,0 +1,43 @@
+package com.supremosan.truebackpack.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.AbstractCommand;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.supremosan.truebackpack.debug.ContentsCodecBenchmark;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BackpackCodecBenchCommand extends AbstractCommand {
+
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
+    private final RequiredArg<String> itemIdArg;
+
+    public BackpackCodecBenchCommand() {
+        super("backpackcodecbench", "Compare legacy and compact backpack contents encoding (admin only)");
+        this.requirePermission("truebackpack.command.backpackcodecbench");
+        this.itemIdArg = this.withRequiredArg("itemId", "item ID used to fill the sample backpacks", ArgTypes.STRING);
+    }
+
+    @Nullable
+    @Override
+    protected CompletableFuture<Void> execute(@Nonnull CommandContext context) {
+        String itemId = itemIdArg.get(context);
+        try {
+            for (String line : ContentsCodecBenchmark.run(itemId)) {
+                context.sendMessage(Message.raw("[TrueBackpack] " + line));
+                LOGGER.log(Level.INFO, "[TrueBackpack] codec bench: " + line);
+            }
+        } catch (Exception e) {
+            context.sendMessage(Message.raw("[TrueBackpack] Benchmark failed — check console."));
+            LOGGER.log(Level.SEVERE, "[TrueBackpack] Codec benchmark failed for '" + itemId + "'", e);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+}
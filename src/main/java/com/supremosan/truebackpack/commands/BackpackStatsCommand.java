@@ -0,0 +1,36 @@
+package com.supremosan.truebackpack.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.AbstractCommand;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.supremosan.truebackpack.data.BackpackContentsCache;
+import com.supremosan.truebackpack.data.BackpackInstanceIndex;
+import com.supremosan.truebackpack.data.BackpackVault;
+import com.supremosan.truebackpack.listener.BackpackArmorListener;
+import com.supremosan.truebackpack.listener.BackpackTooltipListener;
+import com.supremosan.truebackpack.listener.CosmeticListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+
+public class BackpackStatsCommand extends AbstractCommand {
+
+    public BackpackStatsCommand() {
+        super("backpackstats", "Show TrueBackpack cache and persistence counters (admin only)");
+        this.requirePermission("truebackpack.command.backpackstats");
+    }
+
+    @Nullable
+    @Override
+    protected CompletableFuture<Void> execute(@Nonnull CommandContext context) {
+        context.sendMessage(Message.raw("[TrueBackpack] Contents cache: " + BackpackContentsCache.describe()));
+        context.sendMessage(Message.raw("[TrueBackpack] Contents writes: " + BackpackArmorListener.describeWriteStats()));
+        context.sendMessage(Message.raw("[TrueBackpack] Vault: " + BackpackVault.describe()));
+        context.sendMessage(Message.raw("[TrueBackpack] Instance index: " + BackpackInstanceIndex.describe()));
+        context.sendMessage(Message.raw("[TrueBackpack] Cosmetic rebuilds: " + CosmeticListener.describeRebuildStats()));
+        context.sendMessage(Message.raw("[TrueBackpack] Model cache: " + CosmeticListener.describeModelCache()));
+        context.sendMessage(Message.raw("[TrueBackpack] Tooltip cache: " + BackpackTooltipListener.describeCache()));
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,102 @@
+package com.supremosan.truebackpack.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.AbstractCommand;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.inventory.InventoryComponent;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigPaths;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
+import com.supremosan.truebackpack.data.BackpackVault;
+import com.supremosan.truebackpack.factory.BackpackItemFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BackpackVaultSweepCommand extends AbstractCommand {
+
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
+    public BackpackVaultSweepCommand() {
+        super("backpackvaultsweep", "Mark backpacks held by online players and reclaim unseen vault records (admin only)");
+        this.requirePermission("truebackpack.command.backpackvaultsweep");
+    }
+
+    @Nullable
+    @Override
+    protected CompletableFuture<Void> execute(@Nonnull CommandContext context) {
+        if (!Files.isDirectory(BackpackConfigPaths.vaultPath())) {
+            context.sendMessage(Message.raw("[TrueBackpack] The backpack vault has never been used."));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<World, List<Ref<EntityStore>>> playersByWorld = new HashMap<>();
+        for (PlayerRef playerRef : Universe.get().getPlayers()) {
+            UUID worldUuid = playerRef.getWorldUuid();
+            World world = worldUuid != null ? Universe.get().getWorld(worldUuid) : null;
+            Ref<EntityStore> ref = playerRef.getReference();
+            if (world == null || ref == null) continue;
+            playersByWorld.computeIfAbsent(world, w -> new ArrayList<>()).add(ref);
+        }
+
+        List<CompletableFuture<Void>> marks = new ArrayList<>();
+        playersByWorld.forEach((world, refs) -> marks.add(CompletableFuture.runAsync(() -> markHeld(refs), world)));
+
+        return CompletableFuture.allOf(marks.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            if (error != null) {
+                context.sendMessage(Message.raw("[TrueBackpack] Vault sweep aborted — check console."));
+                LOGGER.log(Level.SEVERE, "[TrueBackpack] Failed to mark held backpacks before the vault sweep", error);
+                return null;
+            }
+
+            try {
+                int collected = BackpackVault.sweep(BackpackConfigService.settings().vaultSweepUnseenPasses);
+                context.sendMessage(Message.raw("[TrueBackpack] Vault sweep collected " + collected + " instances."));
+                context.sendMessage(Message.raw("[TrueBackpack] Vault: " + BackpackVault.describe()));
+            } catch (IOException e) {
+                context.sendMessage(Message.raw("[TrueBackpack] Vault sweep failed — check console."));
+                LOGGER.log(Level.SEVERE, "[TrueBackpack] Vault sweep failed", e);
+            }
+            return null;
+        });
+    }
+
+    private static void markHeld(@Nonnull List<Ref<EntityStore>> refs) {
+        for (Ref<EntityStore> ref : refs) {
+            if (!ref.isValid()) continue;
+            Store<EntityStore> store = ref.getStore();
+            markHeld(store.getComponent(ref, InventoryComponent.Armor.getComponentType()));
+            markHeld(store.getComponent(ref, InventoryComponent.Storage.getComponentType()));
+            markHeld(store.getComponent(ref, InventoryComponent.Hotbar.getComponentType()));
+            markHeld(store.getComponent(ref, InventoryComponent.Utility.getComponentType()));
+            markHeld(store.getComponent(ref, InventoryComponent.Tool.getComponentType()));
+            markHeld(store.getComponent(ref, InventoryComponent.Backpack.getComponentType()));
+        }
+    }
+
+    private static void markHeld(@Nullable InventoryComponent component) {
+        if (component == null) return;
+        ItemContainer container = component.getInventory();
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            ItemStack stack = container.getItemStack(slot);
+            if (!ItemStack.isEmpty(stack)) BackpackItemFactory.markContentsLive(stack);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.supremosan.truebackpack.commands;
 
+import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.NameMatching;
 import com.hypixel.hytale.server.core.asset.type.model.config.ModelAttachment;
@@ -9,6 +10,8 @@ import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredAr
 import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.supremosan.truebackpack.cosmetic.BackpackVisualOverride;
 import com.supremosan.truebackpack.listener.BackpackArmorListener;
 import com.supremosan.truebackpack.listener.CosmeticListener;
@@ -56,11 +59,11 @@ public class SetBackpackModelCommand extends AbstractCommand {
 
         BackpackVisualOverride.set(uuid, model, texture);
 
-        if (BackpackArmorListener.hasEquippedBackpack(uuidStr)) {
-            ModelAttachment attachment = new ModelAttachment(model, texture, null, null, 1.0);
+        ModelAttachment attachment = new ModelAttachment(model, texture, null, null, 1.0);
+        runIfBackpackEquipped(target, () -> {
             CosmeticListener.putAttachment(uuidStr, ATTACHMENT_SLOT_KEY, attachment);
             CosmeticListener.scheduleRebuildForUuid(uuidStr);
-        }
+        });
 
         context.sendMessage(Message.raw("[TrueBackpack] Model override set for " + target.getUsername() + " (" + uuidStr + ")."));
         LOGGER.log(Level.INFO, "[TrueBackpack] Model override set for " + uuidStr + ": model=" + model + ", texture=" + texture);
@@ -76,6 +79,20 @@ public class SetBackpackModelCommand extends AbstractCommand {
         }
     }
 
+    private static void runIfBackpackEquipped(@Nonnull PlayerRef target, @Nonnull Runnable action) {
+        Ref<EntityStore> ref = target.getReference();
+        UUID worldUuid = target.getWorldUuid();
+        World world = worldUuid != null ? Universe.get().getWorld(worldUuid) : null;
+        if (ref == null || world == null) return;
+
+        world.execute(() -> {
+            if (!ref.isValid()) return;
+            if (BackpackArmorListener.hasEquippedBackpack(ref.getStore(), ref)) {
+                action.run();
+            }
+        });
+    }
+
     private static final class ClearSub extends AbstractCommand {
 
         private final RequiredArg<String> playerArg;
@@ -101,10 +118,10 @@ public class SetBackpackModelCommand extends AbstractCommand {
 
             BackpackVisualOverride.remove(uuid);
 
-            if (BackpackArmorListener.hasEquippedBackpack(uuidStr)) {
+            runIfBackpackEquipped(target, () -> {
                 CosmeticListener.removeAttachment(uuidStr, ATTACHMENT_SLOT_KEY);
                 CosmeticListener.scheduleRebuildForUuid(uuidStr);
-            }
+            });
 
             context.sendMessage(Message.raw("[TrueBackpack] Model override cleared for " + target.getUsername() + " (" + uuidStr + ")."));
             return CompletableFuture.completedFuture(null);
@@ -5,8 +5,20 @@ import java.util.List;
 
 public final class BackpackConfig {
 
+    public Settings settings = new Settings();
     public List<Entry> backpacks = new ArrayList<>();
 
+    public static final class Settings {
+        public boolean writeBehind = true;
+        public boolean vaultStorage = false;
+        public int vaultSweepUnseenPasses = 0;
+        public boolean validateInstanceIndex = false;
+        public boolean deferUnobservedRebuilds = false;
+        public float maxRebuildDeferSeconds = 10f;
+        public float helipackPingSampleSeconds = 1f;
+        public float helipackPingSmoothing = 0.25f;
+    }
+
     public static final class Entry {
         public String itemId;
         public String blockId = "";
@@ -7,6 +7,7 @@ public final class BackpackConfigPaths {
 
     private static final String MOD_DIR = "TrueBackpack";
     private static final String CONFIG_FILE = "backpacks.json";
+    private static final String VAULT_DIR = "vault";
 
     private BackpackConfigPaths() {
     }
@@ -18,4 +19,8 @@ public final class BackpackConfigPaths {
     public static Path configPath() {
         return modRoot().resolve(CONFIG_FILE);
     }
+
+    public static Path vaultPath() {
+        return modRoot().resolve(VAULT_DIR);
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.supremosan.truebackpack.config.backpack;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.supremosan.truebackpack.data.BackpackContentsCache;
 import com.supremosan.truebackpack.registries.BackpackRegistry;
 
 import java.io.Reader;
@@ -18,17 +19,28 @@ public final class BackpackConfigService {
     private static final Gson GSON = new Gson();
     private static final Gson PRETTY = new GsonBuilder().setPrettyPrinting().create();
 
+    private static final float MIN_PING_SMOOTHING = 0.01f;
+    private static final float MAX_PING_SMOOTHING = 1f;
+    private static final float MIN_PING_SAMPLE_SECONDS = 0.1f;
+
+    private static volatile BackpackConfig.Settings SETTINGS = new BackpackConfig.Settings();
+
     private BackpackConfigService() {
     }
 
     public static void reloadAndRegister(Logger logger) throws Exception {
         BackpackConfigAssets.ensureDefaultConfigCopied(logger);
         BackpackConfig cfg = loadConfig();
-        BackpackRegistry.clear();
+        SETTINGS = sanitize(cfg.settings, logger);
         int registered = registerAll(cfg, logger);
+        BackpackContentsCache.clear();
         logger.log(Level.INFO, "[TrueBackpack] Reload OK. Registered=" + registered);
     }
 
+    public static BackpackConfig.Settings settings() {
+        return SETTINGS;
+    }
+
     public static boolean updateHelipackFuel(String itemId, String fuelItemId, int fuelConsumeAmount, float fuelConsumeInterval, Logger logger) throws Exception {
         BackpackConfig cfg = loadConfig();
 
@@ -44,18 +56,47 @@ public final class BackpackConfigService {
         target.helipack.fuelConsumeInterval = fuelConsumeInterval;
 
         saveConfig(cfg);
-        BackpackRegistry.clear();
+        SETTINGS = sanitize(cfg.settings, logger);
         registerAll(cfg, logger);
         logger.log(Level.INFO, "[TrueBackpack] Updated helipack fuel for '" + itemId + "'");
         return true;
     }
 
+    private static BackpackConfig.Settings sanitize(BackpackConfig.Settings settings, Logger logger) {
+        float smoothing = settings.helipackPingSmoothing;
+        if (!(smoothing >= MIN_PING_SMOOTHING && smoothing <= MAX_PING_SMOOTHING)) {
+            settings.helipackPingSmoothing = Float.isNaN(smoothing)
+                    ? new BackpackConfig.Settings().helipackPingSmoothing
+                    : Math.clamp(smoothing, MIN_PING_SMOOTHING, MAX_PING_SMOOTHING);
+            logger.log(Level.WARNING, "[TrueBackpack] helipackPingSmoothing " + smoothing
+                    + " is outside (0, 1], using " + settings.helipackPingSmoothing);
+        }
+
+        if (settings.vaultSweepUnseenPasses < 0) {
+            logger.log(Level.WARNING, "[TrueBackpack] vaultSweepUnseenPasses " + settings.vaultSweepUnseenPasses
+                    + " is negative, using 0");
+            settings.vaultSweepUnseenPasses = 0;
+        }
+
+        float sampleSeconds = settings.helipackPingSampleSeconds;
+        if (!(sampleSeconds >= MIN_PING_SAMPLE_SECONDS)) {
+            settings.helipackPingSampleSeconds = Float.isNaN(sampleSeconds)
+                    ? new BackpackConfig.Settings().helipackPingSampleSeconds
+                    : MIN_PING_SAMPLE_SECONDS;
+            logger.log(Level.WARNING, "[TrueBackpack] helipackPingSampleSeconds " + sampleSeconds
+                    + " is below " + MIN_PING_SAMPLE_SECONDS + ", using " + settings.helipackPingSampleSeconds);
+        }
+
+        return settings;
+    }
+
     private static BackpackConfig loadConfig() throws Exception {
         Path p = BackpackConfigPaths.configPath();
 
         try (Reader r = Files.newBufferedReader(p)) {
             BackpackConfig cfg = GSON.fromJson(r, BackpackConfig.class);
             if (cfg == null) cfg = new BackpackConfig();
+            if (cfg.settings == null) cfg.settings = new BackpackConfig.Settings();
             if (cfg.backpacks == null) cfg.backpacks = new ArrayList<>();
             return cfg;
         }
@@ -70,7 +111,11 @@ public final class BackpackConfigService {
     }
 
     private static int registerAll(BackpackConfig cfg, Logger logger) {
-        if (cfg == null || cfg.backpacks == null) return 0;
+        BackpackRegistry.Builder builder = BackpackRegistry.builder();
+        if (cfg == null || cfg.backpacks == null) {
+            BackpackRegistry.publish(builder);
+            return 0;
+        }
 
         int count = 0;
 
@@ -83,7 +128,7 @@ public final class BackpackConfigService {
             try {
                 if (e.isHelipack()) {
                     BackpackConfig.HelipackEntry h = e.helipack;
-                    BackpackRegistry.registerHelipack(
+                    builder.registerHelipack(
                             e.itemId,
                             e.blockId,
                             e.capacity,
@@ -99,7 +144,7 @@ public final class BackpackConfigService {
                             )
                     );
                 } else {
-                    BackpackRegistry.register(e.itemId, e.blockId, e.capacity, e.model, e.texture);
+                    builder.register(e.itemId, e.blockId, e.capacity, e.model, e.texture);
                 }
                 count++;
             } catch (Exception ex) {
@@ -107,6 +152,7 @@ public final class BackpackConfigService {
             }
         }
 
+        BackpackRegistry.publish(builder);
         return count;
     }
 
@@ -20,7 +20,6 @@ public final class HatConfigService {
     public static void reloadAndRegister(Logger logger) throws Exception {
         HatConfigAssets.ensureDefaultConfigCopied(logger);
         HatConfig cfg = loadConfig();
-        HatRegistry.clear();
         int registered = registerAll(cfg, logger);
         logger.log(Level.INFO, "[TrueBackpack] Hat reload OK. Registered=" + registered);
     }
@@ -37,7 +36,11 @@ public final class HatConfigService {
     }
 
     private static int registerAll(HatConfig cfg, Logger logger) {
-        if (cfg == null || cfg.hats == null) return 0;
+        HatRegistry.Builder builder = HatRegistry.builder();
+        if (cfg == null || cfg.hats == null) {
+            HatRegistry.publish(builder);
+            return 0;
+        }
 
         int count = 0;
 
@@ -49,7 +52,7 @@ public final class HatConfigService {
 
             try {
                 ColorLight light = resolveLight(e, logger);
-                HatRegistry.register(new HatRegistry.HatEntry(
+                builder.register(new HatRegistry.HatEntry(
                         e.itemId,
                         e.maxDurability,
                         e.drainIntervalTicks,
@@ -63,6 +66,7 @@ public final class HatConfigService {
             }
         }
 
+        HatRegistry.publish(builder);
         return count;
     }
 
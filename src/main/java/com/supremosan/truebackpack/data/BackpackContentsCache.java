@@ -0,0 +1,70 @@
+package com.supremosan.truebackpack.data;
+
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.supremosan.truebackpack.util.BoundedCache;
+import org.bson.BsonValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class BackpackContentsCache {
+
+    private static final int MAX_ENTRIES = 2048;
+
+    private record Entry(@Nonnull BsonValue source,
+                         @Nonnull List<ItemStack> contents,
+                         @Nonnull BackpackContentsSummary summary) {
+    }
+
+    private static final BoundedCache<String, Entry> CACHE = new BoundedCache<>(MAX_ENTRIES);
+
+    private BackpackContentsCache() {
+    }
+
+    @Nullable
+    public static List<ItemStack> get(@Nonnull String instanceId, @Nonnull BsonValue source) {
+        Entry entry = lookup(instanceId, source);
+        return entry != null ? entry.contents() : null;
+    }
+
+    @Nullable
+    public static BackpackContentsSummary getSummary(@Nonnull String instanceId, @Nonnull BsonValue source) {
+        Entry entry = lookup(instanceId, source);
+        return entry != null ? entry.summary() : null;
+    }
+
+    @Nonnull
+    public static List<ItemStack> put(@Nonnull String instanceId,
+                                      @Nonnull BsonValue source,
+                                      @Nonnull List<ItemStack> decoded) {
+        return put(instanceId, source, decoded, BackpackContentsSummary.of(decoded));
+    }
+
+    @Nonnull
+    public static List<ItemStack> put(@Nonnull String instanceId,
+                                      @Nonnull BsonValue source,
+                                      @Nonnull List<ItemStack> decoded,
+                                      @Nonnull BackpackContentsSummary summary) {
+        List<ItemStack> view = Collections.unmodifiableList(new ArrayList<>(decoded));
+        CACHE.put(instanceId, new Entry(source, view, summary));
+        return view;
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    @Nullable
+    private static Entry lookup(@Nonnull String instanceId, @Nonnull BsonValue source) {
+        return CACHE.get(instanceId, e -> e.source() == source
+                || (source.isInt64() && source.equals(e.source())));
+    }
+
+    @Nonnull
+    public static String describe() {
+        return CACHE.describe();
+    }
+}
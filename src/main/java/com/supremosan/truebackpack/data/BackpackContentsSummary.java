@@ -0,0 +1,78 @@
+package com.supremosan.truebackpack.data;
+
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+public record BackpackContentsSummary(int usedSlots, int totalItems, long hash) {
+
+    public static final BackpackContentsSummary EMPTY = new BackpackContentsSummary(0, 0, 0L);
+
+    private static final String USED_SLOTS = "u";
+    private static final String TOTAL_ITEMS = "n";
+    private static final String HASH = "h";
+
+    @Nonnull
+    public static BackpackContentsSummary of(@Nonnull List<ItemStack> contents) {
+        int usedSlots = 0;
+        int totalItems = 0;
+        long hash = 0L;
+
+        for (int slot = 0; slot < contents.size(); slot++) {
+            ItemStack item = contents.get(slot);
+            if (item == null || item.isEmpty()) continue;
+
+            usedSlots++;
+            totalItems += item.getQuantity();
+
+            long h = slot;
+            h = h * 31 + item.getItemId().hashCode();
+            h = h * 31 + item.getQuantity();
+            h = h * 31 + Double.doubleToLongBits(item.getDurability());
+            h = h * 31 + Double.doubleToLongBits(item.getMaxDurability());
+            hash = hash * 0x9E3779B97F4A7C15L + mix(h);
+        }
+
+        return usedSlots == 0 ? EMPTY : new BackpackContentsSummary(usedSlots, totalItems, hash);
+    }
+
+    @Nullable
+    public static BackpackContentsSummary fromBson(@Nullable BsonValue value) {
+        if (value == null || !value.isDocument()) return null;
+
+        BsonDocument doc = value.asDocument();
+        BsonValue used = doc.get(USED_SLOTS);
+        BsonValue total = doc.get(TOTAL_ITEMS);
+        BsonValue hash = doc.get(HASH);
+        if (used == null || !used.isInt32() || total == null || !total.isInt32() || hash == null || !hash.isInt64()) {
+            return null;
+        }
+
+        return new BackpackContentsSummary(used.asInt32().getValue(), total.asInt32().getValue(), hash.asInt64().getValue());
+    }
+
+    @Nonnull
+    public BsonDocument toBson() {
+        BsonDocument doc = new BsonDocument();
+        doc.put(USED_SLOTS, new BsonInt32(usedSlots));
+        doc.put(TOTAL_ITEMS, new BsonInt32(totalItems));
+        doc.put(HASH, new BsonInt64(hash));
+        return doc;
+    }
+
+    public boolean isEmpty() {
+        return usedSlots == 0;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
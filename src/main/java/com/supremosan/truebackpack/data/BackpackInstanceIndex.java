@@ -0,0 +1,171 @@
+package com.supremosan.truebackpack.data;
+
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
+import com.supremosan.truebackpack.factory.BackpackItemFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class BackpackInstanceIndex {
+
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
+    public static final int ARMOR = 0;
+    public static final int STORAGE = 1;
+    public static final int BACKPACK = 2;
+    public static final int HOTBAR = 3;
+    public static final int CONTAINER_KINDS = 4;
+
+    public static final int NOT_FOUND = -1;
+
+    private static final LongAdder LOOKUPS = new LongAdder();
+    private static final LongAdder REBUILDS = new LongAdder();
+    private static final LongAdder MISMATCHES = new LongAdder();
+
+    private final Map<String, Integer> locationsById = new HashMap<>();
+    private final Map<Integer, String> idsByLocation = new HashMap<>();
+    private boolean built;
+
+    public static int pack(int kind, short slot) {
+        return (kind << 16) | (slot & 0xFFFF);
+    }
+
+    public static int kind(int location) {
+        return location >>> 16;
+    }
+
+    public static short slot(int location) {
+        return (short) (location & 0xFFFF);
+    }
+
+    public void update(int kind, @Nonnull ItemContainer container, short slot) {
+        if (!built) return;
+
+        int location = pack(kind, slot);
+        String previous = idsByLocation.remove(location);
+        if (previous != null) locationsById.remove(previous, location);
+
+        ItemStack stack = container.getItemStack(slot);
+        if (ItemStack.isEmpty(stack)) return;
+
+        String instanceId = BackpackItemFactory.getInstanceId(stack);
+        if (instanceId == null) return;
+
+        Integer existing = locationsById.put(instanceId, location);
+        if (existing != null && existing != location) idsByLocation.remove(existing);
+        idsByLocation.put(location, instanceId);
+    }
+
+    @Nonnull
+    BackpackInstanceIndex copy() {
+        BackpackInstanceIndex copy = new BackpackInstanceIndex();
+        copy.locationsById.putAll(locationsById);
+        copy.idsByLocation.putAll(idsByLocation);
+        copy.built = built;
+        return copy;
+    }
+
+    public void invalidate() {
+        built = false;
+        locationsById.clear();
+        idsByLocation.clear();
+    }
+
+    public int locate(@Nonnull ItemContainer[] containers, @Nonnull String instanceId) {
+        LOOKUPS.increment();
+        boolean rebuilt = !built;
+        if (rebuilt) rebuild(containers);
+
+        Integer mapped = locationsById.get(instanceId);
+        int location = mapped != null ? verified(containers, instanceId, mapped) : NOT_FOUND;
+        if (location == NOT_FOUND && !rebuilt) {
+            rebuild(containers);
+            mapped = locationsById.get(instanceId);
+            location = mapped != null ? verified(containers, instanceId, mapped) : NOT_FOUND;
+        }
+
+        if (BackpackConfigService.settings().validateInstanceIndex) {
+            int scanned = scan(containers, instanceId);
+            if (scanned != location) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] Instance index mismatch for " + instanceId
+                        + ": index=" + describeLocation(location) + " scan=" + describeLocation(scanned));
+                rebuild(containers);
+                location = scanned;
+            }
+        }
+        return location;
+    }
+
+    @Nullable
+    public static ItemContainer container(@Nonnull ItemContainer[] containers, int location) {
+        int kind = kind(location);
+        return kind < containers.length ? containers[kind] : null;
+    }
+
+    private int verified(@Nonnull ItemContainer[] containers, @Nonnull String instanceId, int location) {
+        ItemContainer container = container(containers, location);
+        short slot = slot(location);
+        if (container != null && slot < container.getCapacity()) {
+            ItemStack stack = container.getItemStack(slot);
+            if (!ItemStack.isEmpty(stack) && instanceId.equals(BackpackItemFactory.getInstanceId(stack))) {
+                return location;
+            }
+        }
+
+        MISMATCHES.increment();
+        return NOT_FOUND;
+    }
+
+    private void rebuild(@Nonnull ItemContainer[] containers) {
+        REBUILDS.increment();
+        locationsById.clear();
+        idsByLocation.clear();
+        for (int kind = 0; kind < containers.length; kind++) {
+            ItemContainer container = containers[kind];
+            if (container == null) continue;
+            for (short slot = 0; slot < container.getCapacity(); slot++) {
+                ItemStack stack = container.getItemStack(slot);
+                if (ItemStack.isEmpty(stack)) continue;
+                String instanceId = BackpackItemFactory.getInstanceId(stack);
+                if (instanceId == null || locationsById.containsKey(instanceId)) continue;
+                int location = pack(kind, slot);
+                locationsById.put(instanceId, location);
+                idsByLocation.put(location, instanceId);
+            }
+        }
+        built = true;
+    }
+
+    private static int scan(@Nonnull ItemContainer[] containers, @Nonnull String instanceId) {
+        for (int kind = 0; kind < containers.length; kind++) {
+            ItemContainer container = containers[kind];
+            if (container == null) continue;
+            for (short slot = 0; slot < container.getCapacity(); slot++) {
+                ItemStack stack = container.getItemStack(slot);
+                if (ItemStack.isEmpty(stack)) continue;
+                if (instanceId.equals(BackpackItemFactory.getInstanceId(stack))) return pack(kind, slot);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    @Nonnull
+    private static String describeLocation(int location) {
+        if (location == NOT_FOUND) return "none";
+        return kind(location) + ":" + slot(location);
+    }
+
+    @Nonnull
+    public static String describe() {
+        return String.format("lookups=%d rebuilds=%d mismatches=%d validate=%s",
+                LOOKUPS.sum(), REBUILDS.sum(), MISMATCHES.sum(),
+                BackpackConfigService.settings().validateInstanceIndex);
+    }
+}
@@ -0,0 +1,200 @@
+package com.supremosan.truebackpack.data;
+
+import com.hypixel.hytale.component.Component;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.factory.BackpackContentsFormat.EncodedSlot;
+import org.jspecify.annotations.NonNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public final class BackpackPlayerState implements Component<EntityStore> {
+
+    public static ComponentType<EntityStore, BackpackPlayerState> TYPE;
+
+    public static final class PersistedContents {
+        private final String instanceId;
+        private final List<ItemStack> items;
+        private final List<EncodedSlot> slots;
+        private ItemStack lastWritten;
+
+        public PersistedContents(@Nonnull String instanceId,
+                                 @Nonnull List<ItemStack> items,
+                                 @Nonnull List<EncodedSlot> slots,
+                                 @Nonnull ItemStack lastWritten) {
+            this.instanceId = instanceId;
+            this.items = new ArrayList<>(items);
+            this.slots = new ArrayList<>(slots);
+            this.lastWritten = lastWritten;
+        }
+
+        @Nonnull
+        public String instanceId() {
+            return instanceId;
+        }
+
+        public int capacity() {
+            return items.size();
+        }
+
+        @Nullable
+        public ItemStack item(int slot) {
+            return items.get(slot);
+        }
+
+        public void set(int slot, @Nullable ItemStack item, @Nullable EncodedSlot encoded) {
+            items.set(slot, item);
+            slots.set(slot, encoded);
+        }
+
+        @Nonnull
+        public List<ItemStack> items() {
+            return items;
+        }
+
+        @Nonnull
+        public List<EncodedSlot> slots() {
+            return slots;
+        }
+
+        @Nonnull
+        public ItemStack lastWritten() {
+            return lastWritten;
+        }
+
+        public void setLastWritten(@Nonnull ItemStack lastWritten) {
+            this.lastWritten = lastWritten;
+        }
+
+        @Nonnull
+        PersistedContents copy() {
+            return new PersistedContents(instanceId, items, slots, lastWritten);
+        }
+    }
+
+    private String equippedInstanceId;
+    private String equippedItemId;
+    private boolean processingEquip;
+    private boolean processingContainer;
+    private boolean refreshUi;
+    private PersistedContents persistedContents;
+    private BitSet dirtySlots;
+    private final BackpackInstanceIndex instanceIndex;
+
+    public BackpackPlayerState() {
+        this.instanceIndex = new BackpackInstanceIndex();
+    }
+
+    private BackpackPlayerState(@Nonnull BackpackPlayerState other) {
+        this.equippedInstanceId = other.equippedInstanceId;
+        this.equippedItemId = other.equippedItemId;
+        this.processingEquip = other.processingEquip;
+        this.processingContainer = other.processingContainer;
+        this.refreshUi = other.refreshUi;
+        this.persistedContents = other.persistedContents != null ? other.persistedContents.copy() : null;
+        this.dirtySlots = other.dirtySlots != null ? (BitSet) other.dirtySlots.clone() : null;
+        this.instanceIndex = other.instanceIndex.copy();
+    }
+
+    @Nullable
+    public String getEquippedInstanceId() {
+        return equippedInstanceId;
+    }
+
+    @Nullable
+    public String getEquippedItemId() {
+        return equippedItemId;
+    }
+
+    public boolean hasEquippedBackpack() {
+        return equippedInstanceId != null;
+    }
+
+    public void setEquipped(@Nonnull String instanceId, @Nullable String itemId) {
+        this.equippedInstanceId = instanceId;
+        if (itemId != null) this.equippedItemId = itemId;
+    }
+
+    public void clearEquipped() {
+        this.equippedInstanceId = null;
+        this.equippedItemId = null;
+    }
+
+    public boolean isProcessingEquip() {
+        return processingEquip;
+    }
+
+    public void setProcessingEquip(boolean processingEquip) {
+        this.processingEquip = processingEquip;
+    }
+
+    public boolean isProcessingContainer() {
+        return processingContainer;
+    }
+
+    public void setProcessingContainer(boolean processingContainer) {
+        this.processingContainer = processingContainer;
+    }
+
+    public boolean isRefreshUi() {
+        return refreshUi;
+    }
+
+    public void setRefreshUi(boolean refreshUi) {
+        this.refreshUi = refreshUi;
+    }
+
+    @Nullable
+    public PersistedContents getPersistedContents() {
+        return persistedContents;
+    }
+
+    public void setPersistedContents(@Nonnull PersistedContents persistedContents) {
+        this.persistedContents = persistedContents;
+    }
+
+    public void clearPersistedContents() {
+        this.persistedContents = null;
+        this.dirtySlots = null;
+    }
+
+    public void markDirty(@Nonnull BitSet slots) {
+        if (dirtySlots == null) dirtySlots = new BitSet();
+        dirtySlots.or(slots);
+    }
+
+    @Nullable
+    public BitSet takeDirtySlots() {
+        BitSet slots = dirtySlots;
+        dirtySlots = null;
+        return slots;
+    }
+
+    public boolean isDirty() {
+        return dirtySlots != null;
+    }
+
+    @Nonnull
+    public BackpackInstanceIndex getInstanceIndex() {
+        return instanceIndex;
+    }
+
+    @Override
+    public @NonNull Component<EntityStore> clone() {
+        return new BackpackPlayerState(this);
+    }
+
+    public static void register(@Nonnull TrueBackpack plugin) {
+        TYPE = plugin.getEntityStoreRegistry().registerComponent(
+                BackpackPlayerState.class,
+                BackpackPlayerState::new
+        );
+        plugin.getEntityStoreRegistry().registerSystem(new BackpackPlayerStateAttachSystem());
+    }
+}
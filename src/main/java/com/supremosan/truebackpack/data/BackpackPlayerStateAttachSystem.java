@@ -0,0 +1,36 @@
+package com.supremosan.truebackpack.data;
+
+import com.hypixel.hytale.component.AddReason;
+import com.hypixel.hytale.component.Holder;
+import com.hypixel.hytale.component.RemoveReason;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.HolderSystem;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+final class BackpackPlayerStateAttachSystem extends HolderSystem<EntityStore> {
+
+    @Override
+    public void onEntityAdd(@Nonnull Holder<EntityStore> holder,
+                            @Nonnull AddReason reason,
+                            @Nonnull Store<EntityStore> store) {
+        holder.ensureComponent(BackpackPlayerState.TYPE);
+    }
+
+    @Override
+    public void onEntityRemoved(@Nonnull Holder<EntityStore> holder,
+                                @Nonnull RemoveReason reason,
+                                @Nonnull Store<EntityStore> store) {
+        // Pending contents are flushed by BackpackContentsFlushSystem.PlayerStateSystem while the ref is still valid.
+    }
+
+    @Nullable
+    @Override
+    public Query<EntityStore> getQuery() {
+        return Player.getComponentType();
+    }
+}
@@ -0,0 +1,889 @@
+package com.supremosan.truebackpack.data;
+
+import com.supremosan.truebackpack.config.backpack.BackpackConfigPaths;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public final class BackpackVault {
+
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
+    private static final int RECORD_MAGIC = 0x54425631;
+    private static final int RECORD_OVERHEAD = 4 + 2 + 8 + 4 + 4;
+    private static final int LIVENESS_MAGIC = 0x54424C31;
+    private static final long SEGMENT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final int COMPACTION_CHECK_INTERVAL = 256;
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+    private static final long SYNC_INTERVAL_MILLIS = 50;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+    private static final long REVISION_RETENTION_MILLIS = 15 * 60 * 1000L;
+    private static final int WRITE_QUEUE_CAPACITY = 1024;
+    private static final int READ_ATTEMPTS = 3;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String LIVENESS_FILE = "liveness.dat";
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final Set<String> ids = new HashSet<>();
+        private volatile FileChannel channel;
+        private volatile MappedByteBuffer mapped;
+        private volatile long size;
+        private long liveBytes;
+
+        private Segment(long id, @Nonnull Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private record Location(@Nonnull Segment segment, long offset, int recordSize, long revision, boolean tombstone) {
+    }
+
+    private record Expiry(@Nonnull String instanceId, long revision, long expiresAt) {
+    }
+
+    private record PendingWrite(@Nonnull String instanceId, long revision, @Nonnull byte[] payload) {
+    }
+
+    private static final class Instance {
+        private final ConcurrentNavigableMap<Long, Location> revisions = new ConcurrentSkipListMap<>();
+        private final ConcurrentNavigableMap<Long, byte[]> pending = new ConcurrentSkipListMap<>();
+        private volatile boolean released;
+        private volatile boolean collected;
+        private volatile long lastSeenPass;
+
+        private Instance(long lastSeenPass) {
+            this.lastSeenPass = lastSeenPass;
+        }
+    }
+
+    private static final Object WRITE_LOCK = new Object();
+
+    private static final Map<String, Instance> INDEX = new ConcurrentHashMap<>();
+    private static final ConcurrentSkipListMap<Long, Segment> SEGMENTS = new ConcurrentSkipListMap<>();
+    private static final ArrayDeque<Expiry> EXPIRIES = new ArrayDeque<>();
+    private static final Set<String> COLLECTED = new HashSet<>();
+    private static final BlockingQueue<PendingWrite> WRITE_QUEUE = new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY);
+    private static final AtomicInteger QUEUEING = new AtomicInteger();
+
+    private static volatile Path directory;
+    private static volatile boolean closing;
+    private static volatile long livenessPass;
+    private static volatile Thread syncThread;
+    private static Segment active;
+    private static long lastRevision;
+    private static int writesSinceCompaction;
+    private static boolean compactionRequested;
+
+    private BackpackVault() {
+    }
+
+    public static long write(@Nonnull String instanceId, @Nonnull byte[] payload) throws IOException {
+        if (payload.length == 0) throw new IllegalArgumentException("Empty vault payload for " + instanceId);
+        return enqueue(instanceId, payload);
+    }
+
+    public static void release(@Nonnull String instanceId) {
+        if (directory == null && !Files.isDirectory(BackpackConfigPaths.vaultPath())) return;
+        try {
+            enqueue(instanceId, new byte[0]);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Failed to release vault record for " + instanceId, e);
+        }
+    }
+
+    public static void markLive(@Nonnull String instanceId) {
+        if (directory == null && !Files.isDirectory(BackpackConfigPaths.vaultPath())) return;
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "[TrueBackpack] Failed to open backpack vault", e);
+            return;
+        }
+
+        Instance instance = INDEX.get(instanceId);
+        if (instance != null) instance.lastSeenPass = livenessPass;
+    }
+
+    @Nullable
+    public static byte[] read(@Nonnull String instanceId, long revision) {
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "[TrueBackpack] Failed to open backpack vault", e);
+            return null;
+        }
+
+        for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+            Instance instance = INDEX.get(instanceId);
+            if (instance == null) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] Vault has no records for " + instanceId);
+                return null;
+            }
+            instance.lastSeenPass = livenessPass;
+
+            byte[] pending = instance.pending.get(revision);
+            if (pending != null && pending.length > 0) return pending;
+
+            Location location = instance.revisions.get(revision);
+            if (location == null || location.tombstone()) {
+                Map.Entry<Long, byte[]> newestPending = newestPending(instance);
+                location = newestStored(instance);
+                if (newestPending != null && (location == null || newestPending.getKey() > location.revision())) {
+                    warnSubstituted(instanceId, newestPending.getKey(), revision);
+                    return newestPending.getValue();
+                }
+                if (location == null) {
+                    LOGGER.log(Level.SEVERE, "[TrueBackpack] Vault has no contents left for " + instanceId
+                            + " (item references revision " + revision + ")");
+                    return null;
+                }
+                warnSubstituted(instanceId, location.revision(), revision);
+            }
+
+            try {
+                ByteBuffer record = readRecord(location);
+                return record != null ? payloadOf(record) : null;
+            } catch (ClosedChannelException e) {
+                continue;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "[TrueBackpack] Failed to read vault record for " + instanceId, e);
+                return null;
+            }
+        }
+
+        LOGGER.log(Level.WARNING, "[TrueBackpack] Vault record for " + instanceId + " kept moving during read");
+        return null;
+    }
+
+    private static void warnSubstituted(@Nonnull String instanceId, long found, long requested) {
+        LOGGER.log(Level.WARNING, "[TrueBackpack] Vault has revision " + found
+                + " for " + instanceId + " but the item references " + requested);
+    }
+
+    @Nullable
+    private static Map.Entry<Long, byte[]> newestPending(@Nonnull Instance instance) {
+        for (Map.Entry<Long, byte[]> entry : instance.pending.descendingMap().entrySet()) {
+            if (entry.getValue().length > 0) return entry;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Location newestStored(@Nonnull Instance instance) {
+        for (Location location : instance.revisions.descendingMap().values()) {
+            if (!location.tombstone()) return location;
+        }
+        return null;
+    }
+
+    public static int sweep(int unseenPasses) throws IOException {
+        ensureOpen();
+
+        List<String> tombstones = new ArrayList<>();
+        int collected = 0;
+        synchronized (WRITE_LOCK) {
+            if (directory == null || closing) throw new IOException("Backpack vault is closed");
+
+            long pass = livenessPass;
+            for (Map.Entry<String, Instance> entry : INDEX.entrySet()) {
+                Instance instance = entry.getValue();
+                if (instance.collected || !instance.pending.isEmpty()) continue;
+
+                long unseen = pass - instance.lastSeenPass;
+                boolean dead = instance.released ? unseen > 0 : unseenPasses > 0 && unseen >= unseenPasses;
+                if (!dead) continue;
+
+                instance.collected = true;
+                collected++;
+                if (instance.released) {
+                    dropPayloads(entry.getKey(), instance);
+                } else {
+                    tombstones.add(entry.getKey());
+                }
+            }
+
+            livenessPass = pass + 1;
+            saveLiveness();
+        }
+
+        for (String instanceId : tombstones) enqueue(instanceId, new byte[0]);
+        LOGGER.log(Level.INFO, "[TrueBackpack] Vault liveness pass " + (livenessPass - 1)
+                + " collected " + collected + " instances");
+        return collected;
+    }
+
+    @Nonnull
+    public static String describe() {
+        if (directory == null) return "closed";
+
+        synchronized (WRITE_LOCK) {
+            long total = 0;
+            long live = 0;
+            for (Segment segment : SEGMENTS.values()) {
+                total += segment.size;
+                live += segment.liveBytes;
+            }
+            int revisions = 0;
+            int released = 0;
+            for (Instance instance : INDEX.values()) {
+                revisions += instance.revisions.size();
+                if (instance.released) released++;
+            }
+            return String.format("segments=%d instances=%d revisions=%d released=%d collected=%d queued=%d pass=%d live=%dKB total=%dKB",
+                    SEGMENTS.size(), INDEX.size(), revisions, released, COLLECTED.size(), WRITE_QUEUE.size(),
+                    livenessPass, live / 1024, total / 1024);
+        }
+    }
+
+    public static void close() {
+        Thread thread;
+        synchronized (WRITE_LOCK) {
+            if (directory == null) return;
+            closing = true;
+            thread = syncThread;
+            syncThread = null;
+        }
+
+        if (thread != null) {
+            try {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] Vault writer still had " + WRITE_QUEUE.size()
+                        + " queued records at shutdown");
+            }
+        }
+
+        synchronized (WRITE_LOCK) {
+            sync();
+            saveLiveness();
+            for (Segment segment : SEGMENTS.values()) {
+                closeChannel(segment);
+                segment.mapped = null;
+            }
+            SEGMENTS.clear();
+            INDEX.clear();
+            EXPIRIES.clear();
+            COLLECTED.clear();
+            WRITE_QUEUE.clear();
+            active = null;
+            directory = null;
+            closing = false;
+        }
+    }
+
+    private static long enqueue(@Nonnull String instanceId, @Nonnull byte[] payload) throws IOException {
+        ensureOpen();
+
+        long revision;
+        Instance instance;
+        synchronized (WRITE_LOCK) {
+            if (directory == null || closing) throw new IOException("Backpack vault is closed");
+
+            revision = ++lastRevision;
+            instance = INDEX.computeIfAbsent(instanceId, k -> new Instance(livenessPass));
+            instance.pending.put(revision, payload);
+            instance.lastSeenPass = livenessPass;
+            if (payload.length > 0 && instance.collected) {
+                instance.collected = false;
+                COLLECTED.remove(instanceId);
+            }
+            QUEUEING.incrementAndGet();
+        }
+
+        try {
+            WRITE_QUEUE.put(new PendingWrite(instanceId, revision, payload));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            instance.pending.remove(revision);
+            throw new InterruptedIOException("Interrupted while queueing vault revision for " + instanceId);
+        } finally {
+            QUEUEING.decrementAndGet();
+        }
+        return revision;
+    }
+
+    private static void ensureOpen() throws IOException {
+        if (directory != null) return;
+
+        synchronized (WRITE_LOCK) {
+            if (directory != null) return;
+
+            Path dir = BackpackConfigPaths.vaultPath();
+            Files.createDirectories(dir);
+
+            List<Segment> found = new ArrayList<>();
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    long id = parseSegmentId(path);
+                    if (id >= 0) found.add(new Segment(id, path));
+                }
+            }
+            found.sort((a, b) -> Long.compare(a.id, b.id));
+
+            for (int i = 0; i < found.size(); i++) {
+                Segment segment = found.get(i);
+                SEGMENTS.put(segment.id, segment);
+                recover(segment, i == found.size() - 1);
+            }
+            loadLiveness(dir);
+
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Instance> entry : INDEX.entrySet()) {
+                Instance instance = entry.getValue();
+                Location newest = instance.revisions.lastEntry().getValue();
+                for (Location location : instance.revisions.values()) {
+                    if (location != newest) {
+                        EXPIRIES.add(new Expiry(entry.getKey(), location.revision(), now + REVISION_RETENTION_MILLIS));
+                    }
+                }
+                if (instance.released && newestStored(instance) == null) {
+                    instance.collected = true;
+                    COLLECTED.add(entry.getKey());
+                }
+            }
+            for (String instanceId : new ArrayList<>(COLLECTED)) {
+                reclaimCollected(instanceId, INDEX.get(instanceId));
+            }
+
+            for (Segment segment : new ArrayList<>(SEGMENTS.values())) {
+                if (segment == SEGMENTS.lastEntry().getValue()) continue;
+                if (segment.liveBytes == 0) {
+                    dropSegment(segment);
+                } else {
+                    seal(segment);
+                }
+            }
+
+            Map.Entry<Long, Segment> last = SEGMENTS.lastEntry();
+            if (last != null && last.getValue().size < SEGMENT_MAX_BYTES) {
+                active = last.getValue();
+            } else {
+                if (last != null) seal(last.getValue());
+                active = createSegment(dir, last != null ? last.getKey() + 1 : 1);
+            }
+
+            closing = false;
+            directory = dir;
+            syncThread = new Thread(BackpackVault::runBackground, "TrueBackpack-VaultSync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+
+            LOGGER.log(Level.INFO, "[TrueBackpack] Backpack vault opened: " + describe());
+        }
+    }
+
+    private static void recover(@Nonnull Segment segment, boolean writable) throws IOException {
+        segment.channel = writable
+                ? FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(segment.path, StandardOpenOption.READ);
+
+        long fileSize = segment.channel.size();
+        ByteBuffer data = ByteBuffer.allocate((int) fileSize);
+        while (data.hasRemaining()) {
+            if (segment.channel.read(data, data.position()) < 0) break;
+        }
+        data.flip();
+
+        int position = 0;
+        while (position + RECORD_OVERHEAD <= data.limit()) {
+            data.position(position);
+            ByteBuffer record = sliceValidRecord(data);
+            if (record == null) break;
+
+            int recordSize = record.remaining();
+            String instanceId = instanceIdOf(record);
+            long revision = revisionOf(record);
+            boolean tombstone = payloadLengthOf(record) == 0;
+            lastRevision = Math.max(lastRevision, revision);
+            segment.ids.add(instanceId);
+
+            Instance instance = INDEX.computeIfAbsent(instanceId, k -> new Instance(0));
+            if (!instance.revisions.containsKey(revision)) {
+                Location location = new Location(segment, position, recordSize, revision, tombstone);
+                instance.revisions.put(revision, location);
+                segment.liveBytes += recordSize;
+                if (revision == instance.revisions.lastKey()) instance.released = tombstone;
+            }
+
+            position += recordSize;
+        }
+
+        segment.size = position;
+        if (position < fileSize) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Vault segment " + segment.path.getFileName()
+                    + " has " + (fileSize - position) + " trailing bytes that failed validation");
+            if (writable) segment.channel.truncate(position);
+        }
+    }
+
+    private static void loadLiveness(@Nonnull Path dir) {
+        Path file = dir.resolve(LIVENESS_FILE);
+        Map<String, Long> seen = new HashMap<>();
+        long pass = 0;
+
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != LIVENESS_MAGIC) throw new IOException("Unknown liveness file header");
+                pass = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) seen.put(in.readUTF(), in.readLong());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] Vault liveness file is unreadable, treating every instance as seen", e);
+                seen.clear();
+            }
+        }
+
+        livenessPass = pass;
+        for (Map.Entry<String, Instance> entry : INDEX.entrySet()) {
+            Long lastSeen = seen.get(entry.getKey());
+            Instance instance = entry.getValue();
+            instance.lastSeenPass = lastSeen != null ? lastSeen : instance.released ? pass - 1 : pass;
+        }
+    }
+
+    private static void saveLiveness() {
+        Path dir = directory;
+        if (dir == null) return;
+
+        Path file = dir.resolve(LIVENESS_FILE);
+        Path temp = dir.resolve(LIVENESS_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(LIVENESS_MAGIC);
+                out.writeLong(livenessPass);
+                out.writeInt(INDEX.size());
+                for (Map.Entry<String, Instance> entry : INDEX.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().lastSeenPass);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Failed to save vault liveness file", e);
+        }
+    }
+
+    private static void runBackground() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (true) {
+            PendingWrite first = pollWrite();
+            if (first == null) {
+                if (syncThread != Thread.currentThread() && QUEUEING.get() == 0 && WRITE_QUEUE.isEmpty()) return;
+                maintain();
+                continue;
+            }
+
+            if (!closing) pause();
+            batch.add(first);
+            WRITE_QUEUE.drainTo(batch);
+            appendBatch(batch);
+            batch.clear();
+
+            sync();
+            maintain();
+        }
+    }
+
+    @Nullable
+    private static PendingWrite pollWrite() {
+        try {
+            return WRITE_QUEUE.poll(SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(SYNC_INTERVAL_MILLIS);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void appendBatch(@Nonnull List<PendingWrite> batch) {
+        for (PendingWrite write : batch) {
+            if (directory == null) return;
+
+            byte[] id = write.instanceId().getBytes(StandardCharsets.UTF_8);
+            Location location;
+            try {
+                location = appendRecord(buildRecord(id, write.revision(), write.payload()),
+                        write.revision(), write.payload().length == 0);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "[TrueBackpack] Failed to append vault revision " + write.revision()
+                        + " for " + write.instanceId() + ", it is only held in memory", e);
+                continue;
+            }
+
+            synchronized (WRITE_LOCK) {
+                publish(write.instanceId(), location);
+            }
+        }
+    }
+
+    private static void maintain() {
+        boolean compact;
+        synchronized (WRITE_LOCK) {
+            if (directory == null) return;
+            expireRevisions(System.currentTimeMillis());
+            compact = compactionRequested && !closing;
+            if (compact) compactionRequested = false;
+        }
+        if (compact) compactOneSegment();
+    }
+
+    private static void sync() {
+        Segment segment = active;
+        FileChannel channel = segment != null ? segment.channel : null;
+        if (channel == null) return;
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException ignored) {
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Vault fsync of " + segment.path.getFileName() + " failed", e);
+        }
+    }
+
+    @Nullable
+    private static ByteBuffer sliceValidRecord(@Nonnull ByteBuffer data) {
+        int start = data.position();
+        if (data.remaining() < RECORD_OVERHEAD) return null;
+        if (data.getInt(start) != RECORD_MAGIC) return null;
+
+        int idLength = data.getShort(start + 4) & 0xFFFF;
+        int payloadLengthOffset = start + 6 + idLength + 8;
+        if (payloadLengthOffset + 4 > data.limit()) return null;
+
+        int payloadLength = data.getInt(payloadLengthOffset);
+        if (payloadLength < 0) return null;
+
+        long recordSize = (long) RECORD_OVERHEAD + idLength + payloadLength;
+        if (start + recordSize > data.limit()) return null;
+
+        ByteBuffer record = data.duplicate();
+        record.position(start).limit((int) (start + recordSize));
+        record = record.slice();
+
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = record.duplicate();
+        checked.position(4).limit(record.limit() - 4);
+        crc.update(checked);
+        if ((int) crc.getValue() != record.getInt(record.limit() - 4)) return null;
+
+        return record;
+    }
+
+    @Nonnull
+    private static ByteBuffer buildRecord(@Nonnull byte[] id, long revision, @Nonnull byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + id.length + payload.length);
+        record.putInt(RECORD_MAGIC);
+        record.putShort((short) id.length);
+        record.put(id);
+        record.putLong(revision);
+        record.putInt(payload.length);
+        record.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.position() - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    @Nonnull
+    private static Location appendRecord(@Nonnull ByteBuffer record, long revision, boolean tombstone) throws IOException {
+        int recordSize = record.remaining();
+        if (active.size > 0 && active.size + recordSize > SEGMENT_MAX_BYTES) {
+            seal(active);
+            active = createSegment(directory, active.id + 1);
+        }
+
+        long offset = active.size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += active.channel.write(record, position);
+        }
+        active.size += recordSize;
+
+        return new Location(active, offset, recordSize, revision, tombstone);
+    }
+
+    private static void publish(@Nonnull String instanceId, @Nonnull Location location) {
+        Instance instance = INDEX.computeIfAbsent(instanceId, k -> new Instance(livenessPass));
+        Map.Entry<Long, Location> previous = instance.revisions.lastEntry();
+        Location previousStored = newestStored(instance);
+
+        instance.revisions.put(location.revision(), location);
+        instance.pending.remove(location.revision());
+        location.segment().ids.add(instanceId);
+        location.segment().liveBytes += location.recordSize();
+
+        if (++writesSinceCompaction >= COMPACTION_CHECK_INTERVAL) {
+            writesSinceCompaction = 0;
+            compactionRequested = true;
+        }
+
+        long expiresAt = System.currentTimeMillis() + REVISION_RETENTION_MILLIS;
+        if (previous != null && previous.getKey() > location.revision()) {
+            EXPIRIES.add(new Expiry(instanceId, location.revision(), expiresAt));
+            return;
+        }
+
+        instance.released = location.tombstone();
+        if (previous != null) {
+            EXPIRIES.add(new Expiry(instanceId, previous.getKey(), expiresAt));
+            if (previousStored != null && previousStored != previous.getValue()) {
+                EXPIRIES.add(new Expiry(instanceId, previousStored.revision(), expiresAt));
+            }
+        }
+        if (instance.collected && location.tombstone()) dropPayloads(instanceId, instance);
+    }
+
+    private static void expireRevisions(long now) {
+        while (!EXPIRIES.isEmpty() && EXPIRIES.peekFirst().expiresAt() <= now) {
+            Expiry expiry = EXPIRIES.pollFirst();
+            Instance instance = INDEX.get(expiry.instanceId());
+            if (instance == null) continue;
+
+            Location location = instance.revisions.get(expiry.revision());
+            if (location == null) continue;
+            if (location == instance.revisions.lastEntry().getValue() || location == newestStored(instance)) continue;
+
+            instance.revisions.remove(expiry.revision());
+            location.segment().liveBytes -= location.recordSize();
+            if (instance.collected) reclaimCollected(expiry.instanceId(), instance);
+        }
+    }
+
+    private static void dropPayloads(@Nonnull String instanceId, @Nonnull Instance instance) {
+        Iterator<Location> locations = instance.revisions.values().iterator();
+        while (locations.hasNext()) {
+            Location location = locations.next();
+            if (location.tombstone()) continue;
+            locations.remove();
+            location.segment().liveBytes -= location.recordSize();
+        }
+        COLLECTED.add(instanceId);
+        reclaimCollected(instanceId, instance);
+    }
+
+    private static void reclaimCollected(@Nonnull String instanceId, @Nullable Instance instance) {
+        if (instance == null || !instance.collected || !instance.pending.isEmpty()) return;
+        if (instance.revisions.size() != 1) return;
+
+        Location tombstone = instance.revisions.firstEntry().getValue();
+        for (Segment segment : SEGMENTS.values()) {
+            if (segment != tombstone.segment() && segment.ids.contains(instanceId)) return;
+        }
+
+        INDEX.remove(instanceId, instance);
+        COLLECTED.remove(instanceId);
+        tombstone.segment().liveBytes -= tombstone.recordSize();
+    }
+
+    @Nullable
+    private static ByteBuffer readRecord(@Nonnull Location location) throws IOException {
+        Segment segment = location.segment();
+        MappedByteBuffer mapped = segment.mapped;
+        ByteBuffer data;
+
+        if (mapped != null) {
+            data = mapped.duplicate();
+            data.position((int) location.offset());
+        } else {
+            FileChannel channel = segment.channel;
+            if (channel == null) throw new ClosedChannelException();
+            data = ByteBuffer.allocate(location.recordSize());
+            long position = location.offset();
+            while (data.hasRemaining()) {
+                int read = channel.read(data, position + data.position());
+                if (read < 0) return null;
+            }
+            data.flip();
+        }
+
+        return sliceValidRecord(data);
+    }
+
+    private static void compactOneSegment() {
+        Segment candidate = null;
+        List<Map.Entry<String, Location>> survivors = new ArrayList<>();
+
+        synchronized (WRITE_LOCK) {
+            if (directory == null) return;
+            double worstLiveRatio = 1.0 - COMPACTION_DEAD_RATIO;
+            for (Segment segment : SEGMENTS.values()) {
+                if (segment == active || segment.size == 0) continue;
+                double liveRatio = (double) segment.liveBytes / segment.size;
+                if (liveRatio < worstLiveRatio) {
+                    worstLiveRatio = liveRatio;
+                    candidate = segment;
+                }
+            }
+            if (candidate == null) return;
+
+            for (String instanceId : candidate.ids) {
+                Instance instance = INDEX.get(instanceId);
+                if (instance == null) continue;
+                for (Location location : instance.revisions.values()) {
+                    if (location.segment() == candidate) survivors.add(Map.entry(instanceId, location));
+                }
+            }
+        }
+
+        try {
+            for (Map.Entry<String, Location> entry : survivors) {
+                Location current = entry.getValue();
+                ByteBuffer record = readRecord(current);
+                if (record == null) continue;
+                ByteBuffer copy = ByteBuffer.allocate(record.remaining());
+                copy.put(record).flip();
+
+                Location moved = appendRecord(copy, current.revision(), current.tombstone());
+                synchronized (WRITE_LOCK) {
+                    if (directory == null) return;
+                    Instance instance = INDEX.get(entry.getKey());
+                    if (instance == null || !instance.revisions.replace(current.revision(), current, moved)) continue;
+                    moved.segment().ids.add(entry.getKey());
+                    moved.segment().liveBytes += moved.recordSize();
+                    current.segment().liveBytes -= current.recordSize();
+                }
+            }
+            sync();
+
+            synchronized (WRITE_LOCK) {
+                if (directory == null) return;
+                dropSegment(candidate);
+                for (String instanceId : new ArrayList<>(COLLECTED)) {
+                    reclaimCollected(instanceId, INDEX.get(instanceId));
+                }
+            }
+
+            LOGGER.log(Level.INFO, "[TrueBackpack] Compacted vault segment " + candidate.path.getFileName()
+                    + " (" + survivors.size() + " live records)");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Vault compaction of " + candidate.path.getFileName() + " failed", e);
+        }
+    }
+
+    @Nonnull
+    private static Segment createSegment(@Nonnull Path dir, long id) throws IOException {
+        Segment segment = new Segment(id, dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+        segment.channel = FileChannel.open(segment.path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.size = segment.channel.size();
+        SEGMENTS.put(id, segment);
+        return segment;
+    }
+
+    private static void seal(@Nonnull Segment segment) throws IOException {
+        if (segment.mapped != null) return;
+        segment.channel.force(false);
+        segment.mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        closeChannel(segment);
+    }
+
+    private static void dropSegment(@Nonnull Segment segment) {
+        SEGMENTS.remove(segment.id);
+        segment.mapped = null;
+        closeChannel(segment);
+        deleteSegmentFile(segment);
+    }
+
+    private static void deleteSegmentFile(@Nonnull Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Could not delete vault segment " + segment.path.getFileName()
+                    + ", it will be retried on next start", e);
+        }
+    }
+
+    private static void closeChannel(@Nonnull Segment segment) {
+        FileChannel channel = segment.channel;
+        if (channel == null) return;
+        segment.channel = null;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Nonnull
+    private static String instanceIdOf(@Nonnull ByteBuffer record) {
+        int idLength = record.getShort(4) & 0xFFFF;
+        byte[] id = new byte[idLength];
+        record.get(6, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private static long revisionOf(@Nonnull ByteBuffer record) {
+        int idLength = record.getShort(4) & 0xFFFF;
+        return record.getLong(6 + idLength);
+    }
+
+    private static int payloadLengthOf(@Nonnull ByteBuffer record) {
+        int idLength = record.getShort(4) & 0xFFFF;
+        return record.getInt(6 + idLength + 8);
+    }
+
+    @Nonnull
+    private static byte[] payloadOf(@Nonnull ByteBuffer record) {
+        int lengthOffset = 6 + (record.getShort(4) & 0xFFFF) + 8;
+        byte[] payload = new byte[record.getInt(lengthOffset)];
+        record.get(lengthOffset + 4, payload);
+        return payload;
+    }
+
+    private static long parseSegmentId(@Nonnull Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.supremosan.truebackpack.debug;
+
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.supremosan.truebackpack.factory.BackpackContentsCodec;
+import com.supremosan.truebackpack.factory.BackpackItemFactory;
+import com.supremosan.truebackpack.registries.BackpackRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+public final class ContentsCodecBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1000;
+
+    private ContentsCodecBenchmark() {
+    }
+
+    @Nonnull
+    public static List<String> run(@Nonnull String sampleItemId) {
+        TreeSet<Short> capacities = new TreeSet<>();
+        List<String> mixedIds = new ArrayList<>();
+        mixedIds.add(sampleItemId);
+        for (BackpackRegistry.BackpackEntry entry : BackpackRegistry.entries()) {
+            capacities.add(entry.capacity());
+            if (!mixedIds.contains(entry.itemId())) mixedIds.add(entry.itemId());
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("capacity fill | legacy bytes | compact bytes | legacy enc/dec us | compact enc/dec us");
+
+        for (short capacity : capacities) {
+            lines.add(measure("half", uniformFill(sampleItemId, capacity, capacity / 2)));
+            lines.add(measure("full", uniformFill(sampleItemId, capacity, capacity)));
+            lines.add(measure("mixed", mixedFill(mixedIds, capacity)));
+        }
+
+        return lines;
+    }
+
+    @Nonnull
+    private static List<ItemStack> uniformFill(@Nonnull String sampleItemId, int capacity, int filled) {
+        List<ItemStack> contents = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            contents.add(i < filled ? new ItemStack(sampleItemId).withQuantity(1 + (i % 16)) : null);
+        }
+        return contents;
+    }
+
+    @Nonnull
+    private static List<ItemStack> mixedFill(@Nonnull List<String> itemIds, int capacity) {
+        List<ItemStack> contents = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            if (i % 5 == 4) {
+                contents.add(null);
+                continue;
+            }
+
+            ItemStack stack = new ItemStack(itemIds.get(i % itemIds.size()));
+            if (stack.getMaxDurability() > 0 && i % 3 == 1) {
+                stack = stack.withDurability(stack.getMaxDurability() / 2);
+            }
+            if (i % 4 == 2) stack = BackpackItemFactory.setEquipped(stack, false);
+            contents.add(stack.withQuantity(1 + (i % 16)));
+        }
+        return contents;
+    }
+
+    @Nonnull
+    private static String measure(@Nonnull String fill, @Nonnull List<ItemStack> contents) {
+        BsonArray legacy = BackpackContentsCodec.encodeLegacy(contents);
+        BsonBinary compact = BackpackContentsCodec.encode(contents);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            BackpackContentsCodec.decodeLegacy(BackpackContentsCodec.encodeLegacy(contents));
+            BackpackContentsCodec.decodeCompact(BackpackContentsCodec.encode(contents).getData());
+        }
+
+        long legacyEncode = time(() -> BackpackContentsCodec.encodeLegacy(contents));
+        long legacyDecode = time(() -> BackpackContentsCodec.decodeLegacy(legacy));
+        long compactEncode = time(() -> BackpackContentsCodec.encode(contents));
+        long compactDecode = time(() -> BackpackContentsCodec.decodeCompact(compact.getData()));
+
+        return String.format("%3d %5s | %6d | %6d | %7.2f / %7.2f | %7.2f / %7.2f",
+                contents.size(), fill,
+                BackpackContentsCodec.serializedSize(legacy),
+                BackpackContentsCodec.serializedSize(compact),
+                legacyEncode / 1000.0, legacyDecode / 1000.0,
+                compactEncode / 1000.0, compactDecode / 1000.0);
+    }
+
+    private static long time(@Nonnull Runnable task) {
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / MEASURED_ROUNDS;
+    }
+}
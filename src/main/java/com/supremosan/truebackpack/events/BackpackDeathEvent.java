@@ -30,6 +30,7 @@ import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.math.vector.Rotation3f;
 import com.hypixel.hytale.math.vector.Rotation3fc;
 import com.hypixel.hytale.server.core.modules.entity.item.ItemComponent;
+import com.supremosan.truebackpack.data.BackpackPlayerState;
 import com.supremosan.truebackpack.factory.BackpackItemFactory;
 import com.supremosan.truebackpack.listener.BackpackArmorListener;
 import com.supremosan.truebackpack.registries.BackpackRegistry;
@@ -88,6 +89,11 @@ public class BackpackDeathEvent extends DeathSystems.OnDeathSystem {
         UUIDComponent uuidComp = store.getComponent(ref, UUIDComponent.getComponentType());
         String playerUuid = uuidComp != null ? uuidComp.getUuid().toString() : null;
 
+        if (playerUuid != null) {
+            BackpackArmorListener.flushPendingContents(playerUuid, store.getComponent(ref, BackpackPlayerState.TYPE),
+                    armorComp, storageComp, backpackComp, hotbarComp);
+        }
+
         List<BackpackEntry> backpacks = collectAndRemoveBackpacks(
                 armorComp, storageComp, hotbarComp, backpackComp, playerUuid);
 
@@ -264,6 +270,7 @@ public class BackpackDeathEvent extends DeathSystems.OnDeathSystem {
                 }
 
                 container.removeItemStackFromSlot(slot);
+                BackpackItemFactory.releaseContents(item);
                 found.add(new BackpackEntry(registry.blockId(), contents));
             }
         }
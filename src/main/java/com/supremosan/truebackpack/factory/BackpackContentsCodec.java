@@ -0,0 +1,151 @@
+package com.supremosan.truebackpack.factory;
+
+import com.hypixel.hytale.codec.ExtraInfo;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.supremosan.truebackpack.factory.BackpackContentsFormat.EncodedSlot;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class BackpackContentsCodec {
+
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    private BackpackContentsCodec() {
+    }
+
+    @Nonnull
+    public static BsonBinary encode(@Nonnull List<ItemStack> contents) {
+        List<EncodedSlot> slots = new ArrayList<>(contents.size());
+        for (ItemStack item : contents) {
+            slots.add(encodeSlot(item));
+        }
+        return assemble(slots);
+    }
+
+    @Nonnull
+    public static List<ItemStack> decode(@Nullable BsonValue stored) {
+        if (stored == null || stored.isNull()) return Collections.emptyList();
+        if (stored.isBinary()) return decodeCompact(stored.asBinary().getData());
+        if (stored.isArray()) return decodeLegacy(stored.asArray());
+        return Collections.emptyList();
+    }
+
+    @Nullable
+    public static EncodedSlot encodeSlot(@Nullable ItemStack item) {
+        if (item == null || item.isEmpty()) return null;
+
+        String itemId = item.getItemId();
+        BsonDocument document = ItemStack.CODEC.encode(item, ExtraInfo.THREAD_LOCAL.get()).asDocument();
+        try {
+            int quantity = item.getQuantity();
+            ItemStack rebuilt = new ItemStack(itemId).withQuantity(quantity);
+
+            double maxDurability = item.getMaxDurability();
+            boolean hasMaxDurability = Double.compare(maxDurability, rebuilt.getMaxDurability()) != 0;
+            if (hasMaxDurability) rebuilt = rebuilt.withRestoredDurability(maxDurability);
+
+            double durability = item.getDurability();
+            boolean hasDurability = Double.compare(durability, rebuilt.getDurability()) != 0;
+            if (hasDurability) rebuilt = rebuilt.withDurability(durability);
+
+            if (ItemStack.CODEC.encode(rebuilt, ExtraInfo.THREAD_LOCAL.get()).equals(document)) {
+                return BackpackContentsFormat.simple(itemId, quantity, maxDurability, hasMaxDurability,
+                        durability, hasDurability);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "[TrueBackpack] Compact encoding failed for " + itemId
+                    + ", storing full document instead", e);
+        }
+
+        return BackpackContentsFormat.document(itemId, item.getQuantity(), toBytes(document));
+    }
+
+    @Nonnull
+    public static BsonBinary assemble(@Nonnull List<EncodedSlot> slots) {
+        return new BsonBinary(BackpackContentsFormat.assemble(slots));
+    }
+
+    @Nonnull
+    public static List<ItemStack> decodeCompact(@Nonnull byte[] data) {
+        List<EncodedSlot> slots = BackpackContentsFormat.disassemble(data);
+        List<ItemStack> result = new ArrayList<>(slots.size());
+        for (EncodedSlot slot : slots) {
+            result.add(slot == null ? null : toItem(slot));
+        }
+        return result;
+    }
+
+    @Nonnull
+    private static ItemStack toItem(@Nonnull EncodedSlot slot) {
+        if (slot.isDocument()) {
+            return ItemStack.CODEC.decode(new RawBsonDocument(slot.document()), ExtraInfo.THREAD_LOCAL.get());
+        }
+
+        ItemStack item = new ItemStack(slot.itemId()).withQuantity(slot.quantity());
+        if ((slot.flags() & BackpackContentsFormat.FLAG_MAX_DURABILITY) != 0) {
+            item = item.withRestoredDurability(slot.maxDurability());
+        }
+        if ((slot.flags() & BackpackContentsFormat.FLAG_DURABILITY) != 0) {
+            item = item.withDurability(slot.durability());
+        }
+        return item;
+    }
+
+    @Nonnull
+    public static BsonArray encodeLegacy(@Nonnull List<ItemStack> contents) {
+        BsonArray array = new BsonArray();
+        for (ItemStack item : contents) {
+            if (item == null || item.isEmpty()) {
+                array.add(BsonNull.VALUE);
+            } else {
+                array.add(ItemStack.CODEC.encode(item, ExtraInfo.THREAD_LOCAL.get()));
+            }
+        }
+        return array;
+    }
+
+    @Nonnull
+    public static List<ItemStack> decodeLegacy(@Nonnull BsonArray array) {
+        List<ItemStack> result = new ArrayList<>(array.size());
+        for (BsonValue val : array) {
+            if (val == null || val.isNull()) {
+                result.add(null);
+            } else {
+                result.add(ItemStack.CODEC.decode(val, ExtraInfo.THREAD_LOCAL.get()));
+            }
+        }
+        return result;
+    }
+
+    public static int serializedSize(@Nonnull BsonValue stored) {
+        if (stored.isBinary()) return stored.asBinary().getData().length;
+        return toBytes(new BsonDocument("v", stored)).length;
+    }
+
+    @Nonnull
+    private static byte[] toBytes(@Nonnull BsonDocument document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            DOCUMENT_CODEC.encode(writer, document, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,201 @@
+package com.supremosan.truebackpack.factory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public final class BackpackContentsFormat {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    public static final int FLAG_QUANTITY = 1;
+    public static final int FLAG_MAX_DURABILITY = 1 << 1;
+    public static final int FLAG_DURABILITY = 1 << 2;
+    public static final int FLAG_FRACTIONAL = 1 << 3;
+    public static final int FLAG_DOCUMENT = 1 << 4;
+
+    public record EncodedSlot(@Nonnull String itemId,
+                              int flags,
+                              int quantity,
+                              double maxDurability,
+                              double durability,
+                              @Nullable byte[] document) {
+
+        public boolean isDocument() {
+            return (flags & FLAG_DOCUMENT) != 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EncodedSlot other)) return false;
+            return flags == other.flags
+                    && quantity == other.quantity
+                    && Double.compare(maxDurability, other.maxDurability) == 0
+                    && Double.compare(durability, other.durability) == 0
+                    && itemId.equals(other.itemId)
+                    && Arrays.equals(document, other.document);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemId, flags, quantity, maxDurability, durability, Arrays.hashCode(document));
+        }
+    }
+
+    private BackpackContentsFormat() {
+    }
+
+    @Nonnull
+    public static EncodedSlot simple(@Nonnull String itemId,
+                                     int quantity,
+                                     double maxDurability,
+                                     boolean hasMaxDurability,
+                                     double durability,
+                                     boolean hasDurability) {
+        int flags = 0;
+        if (quantity != 1) flags |= FLAG_QUANTITY;
+        if (hasMaxDurability) flags |= FLAG_MAX_DURABILITY;
+        if (hasDurability) flags |= FLAG_DURABILITY;
+        if (!isWholeNumber(maxDurability) || !isWholeNumber(durability)) flags |= FLAG_FRACTIONAL;
+        return new EncodedSlot(itemId, flags, quantity, maxDurability, durability, null);
+    }
+
+    @Nonnull
+    public static EncodedSlot document(@Nonnull String itemId, int quantity, @Nonnull byte[] document) {
+        return new EncodedSlot(itemId, FLAG_DOCUMENT, quantity, 0, 0, document);
+    }
+
+    @Nonnull
+    public static byte[] assemble(@Nonnull List<EncodedSlot> slots) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int used = 0;
+        for (EncodedSlot slot : slots) {
+            if (slot == null) continue;
+            dictionary.putIfAbsent(slot.itemId(), dictionary.size());
+            used++;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + used * 6);
+        out.write(FORMAT_VERSION);
+        writeVarInt(out, slots.size());
+
+        writeVarInt(out, dictionary.size());
+        for (String itemId : dictionary.keySet()) {
+            byte[] utf = itemId.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, utf.length);
+            out.writeBytes(utf);
+        }
+
+        writeVarInt(out, used);
+        for (int i = 0; i < slots.size(); i++) {
+            EncodedSlot slot = slots.get(i);
+            if (slot == null) continue;
+
+            writeVarInt(out, i);
+            writeVarInt(out, dictionary.get(slot.itemId()));
+            out.write(slot.flags());
+
+            if (slot.isDocument()) {
+                byte[] document = slot.document();
+                writeVarInt(out, document.length);
+                out.writeBytes(document);
+                continue;
+            }
+
+            boolean fractional = (slot.flags() & FLAG_FRACTIONAL) != 0;
+            if ((slot.flags() & FLAG_QUANTITY) != 0) writeVarInt(out, slot.quantity());
+            if ((slot.flags() & FLAG_MAX_DURABILITY) != 0) writeDurability(out, slot.maxDurability(), fractional);
+            if ((slot.flags() & FLAG_DURABILITY) != 0) writeDurability(out, slot.durability(), fractional);
+        }
+
+        return out.toByteArray();
+    }
+
+    @Nonnull
+    public static List<EncodedSlot> disassemble(@Nonnull byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported backpack contents format version " + version);
+        }
+
+        int capacity = readVarInt(in);
+        List<EncodedSlot> result = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) result.add(null);
+
+        String[] dictionary = new String[readVarInt(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] utf = new byte[readVarInt(in)];
+            in.get(utf);
+            dictionary[i] = new String(utf, StandardCharsets.UTF_8);
+        }
+
+        int used = readVarInt(in);
+        for (int i = 0; i < used; i++) {
+            int slot = readVarInt(in);
+            String itemId = dictionary[readVarInt(in)];
+            int flags = in.get() & 0xFF;
+
+            if ((flags & FLAG_DOCUMENT) != 0) {
+                byte[] document = new byte[readVarInt(in)];
+                in.get(document);
+                result.set(slot, new EncodedSlot(itemId, flags, 0, 0, 0, document));
+                continue;
+            }
+
+            boolean fractional = (flags & FLAG_FRACTIONAL) != 0;
+            int quantity = (flags & FLAG_QUANTITY) != 0 ? readVarInt(in) : 1;
+            double maxDurability = (flags & FLAG_MAX_DURABILITY) != 0 ? readDurability(in, fractional) : 0;
+            double durability = (flags & FLAG_DURABILITY) != 0 ? readDurability(in, fractional) : 0;
+            result.set(slot, new EncodedSlot(itemId, flags, quantity, maxDurability, durability, null));
+        }
+
+        return result;
+    }
+
+    static boolean isWholeNumber(double value) {
+        return value >= 0 && value <= Integer.MAX_VALUE && value == Math.rint(value);
+    }
+
+    private static void writeDurability(@Nonnull ByteArrayOutputStream out, double value, boolean fractional) {
+        if (!fractional) {
+            writeVarInt(out, (int) value);
+            return;
+        }
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+        }
+    }
+
+    private static double readDurability(@Nonnull ByteBuffer in, boolean fractional) {
+        return fractional ? in.getDouble() : readVarInt(in);
+    }
+
+    static void writeVarInt(@Nonnull ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarInt(@Nonnull ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint in backpack contents");
+    }
+}
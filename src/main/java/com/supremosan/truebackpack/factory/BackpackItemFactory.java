@@ -7,8 +7,13 @@ import com.hypixel.hytale.codec.schema.SchemaContext;
 import com.hypixel.hytale.codec.schema.config.Schema;
 import com.hypixel.hytale.codec.schema.config.StringSchema;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
+import com.supremosan.truebackpack.data.BackpackContentsCache;
+import com.supremosan.truebackpack.data.BackpackContentsSummary;
+import com.supremosan.truebackpack.data.BackpackVault;
 import com.supremosan.truebackpack.registries.BackpackRegistry;
-import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonInt64;
 import org.bson.BsonNull;
 import org.bson.BsonValue;
 import org.jspecify.annotations.NonNull;
@@ -16,8 +21,11 @@ import org.jspecify.annotations.NonNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class BackpackItemFactory {
     public static final KeyedCodec<String> INSTANCE_ID_CODEC =
@@ -29,19 +37,20 @@ public class BackpackItemFactory {
     public static final KeyedCodec<Float> REMAINING_FUEL_TIME_CODEC =
             new KeyedCodec<>("Backpack_remaining_fuel_time", Codec.FLOAT);
 
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
     private static final String CONTENTS_KEY = "Backpack_contents";
+    private static final String SUMMARY_KEY = "Backpack_summary";
 
-    private static final Codec<BsonArray> BSON_ARRAY_CODEC = new Codec<>() {
+    private static final Codec<BsonValue> BSON_VALUE_CODEC = new Codec<>() {
 
         @Override
-        public BsonArray decode(BsonValue bsonValue, ExtraInfo extraInfo) {
-            return bsonValue != null && bsonValue.isArray()
-                    ? bsonValue.asArray()
-                    : new BsonArray();
+        public BsonValue decode(BsonValue bsonValue, ExtraInfo extraInfo) {
+            return bsonValue != null ? bsonValue : BsonNull.VALUE;
         }
 
         @Override
-        public BsonValue encode(BsonArray value, ExtraInfo extraInfo) {
+        public BsonValue encode(BsonValue value, ExtraInfo extraInfo) {
             return value != null ? value : BsonNull.VALUE;
         }
 
@@ -56,7 +65,24 @@ public class BackpackItemFactory {
 
     @Nonnull
     public static ItemStack createBackpackInstance(@Nonnull ItemStack original) {
-        return original.withMetadata(INSTANCE_ID_CODEC, UUID.randomUUID().toString());
+        ItemStack retagged = original.withMetadata(INSTANCE_ID_CODEC, UUID.randomUUID().toString());
+        if (!isVaultReference(original)) return retagged;
+        return saveContents(retagged, loadContents(original));
+    }
+
+    public static void releaseContents(@Nonnull ItemStack backpack) {
+        String instanceId = getInstanceId(backpack);
+        if (instanceId != null && isVaultReference(backpack)) BackpackVault.release(instanceId);
+    }
+
+    public static void markContentsLive(@Nonnull ItemStack backpack) {
+        String instanceId = getInstanceId(backpack);
+        if (instanceId != null && isVaultReference(backpack)) BackpackVault.markLive(instanceId);
+    }
+
+    private static boolean isVaultReference(@Nonnull ItemStack backpack) {
+        BsonValue stored = backpack.getFromMetadataOrNull(CONTENTS_KEY, BSON_VALUE_CODEC);
+        return stored != null && stored.isInt64() && getInstanceId(backpack) != null;
     }
 
     @Nonnull
@@ -91,46 +117,105 @@ public class BackpackItemFactory {
     @Nonnull
     public static ItemStack saveContents(@Nonnull ItemStack backpack,
                                          @Nonnull List<ItemStack> contents) {
-        BsonArray array = new BsonArray();
+        return writeContents(backpack, contents, BackpackContentsCodec.encode(contents));
+    }
+
+    @Nonnull
+    public static ItemStack saveEncodedContents(@Nonnull ItemStack backpack,
+                                                @Nonnull List<ItemStack> contents,
+                                                @Nonnull List<BackpackContentsFormat.EncodedSlot> slots) {
+        return writeContents(backpack, contents, BackpackContentsCodec.assemble(slots));
+    }
+
+    @Nonnull
+    private static ItemStack writeContents(@Nonnull ItemStack backpack,
+                                           @Nonnull List<ItemStack> contents,
+                                           @Nonnull BsonBinary encoded) {
+        List<ItemStack> normalized = new ArrayList<>(contents.size());
         for (ItemStack item : contents) {
-            if (item == null || item.isEmpty()) {
-                array.add(BsonNull.VALUE);
-            } else {
-                array.add(ItemStack.CODEC.encode(item, ExtraInfo.THREAD_LOCAL.get()));
+            normalized.add(item == null || item.isEmpty() ? null : item);
+        }
+        BackpackContentsSummary summary = BackpackContentsSummary.of(normalized);
+
+        String instanceId = getInstanceId(backpack);
+        if (instanceId == null) {
+            return backpack.withMetadata(CONTENTS_KEY, encoded).withMetadata(SUMMARY_KEY, summary.toBson());
+        }
+
+        BsonValue stored = encoded;
+        if (BackpackConfigService.settings().vaultStorage) {
+            try {
+                stored = new BsonInt64(BackpackVault.write(instanceId, encoded.getData()));
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] Vault write failed for " + instanceId
+                        + ", keeping contents on the item", e);
             }
         }
-        return backpack.withMetadata(CONTENTS_KEY, array);
+
+        BackpackContentsCache.put(instanceId, stored, normalized, summary);
+
+        return backpack.withMetadata(CONTENTS_KEY, stored).withMetadata(SUMMARY_KEY, summary.toBson());
     }
 
     @Nonnull
     public static List<ItemStack> loadContents(@Nonnull ItemStack backpack) {
-        BsonArray array = backpack.getFromMetadataOrNull(
+        return new ArrayList<>(contentsView(backpack));
+    }
+
+    @Nonnull
+    public static List<ItemStack> contentsView(@Nonnull ItemStack backpack) {
+        BsonValue stored = backpack.getFromMetadataOrNull(
                 CONTENTS_KEY,
-                BSON_ARRAY_CODEC
+                BSON_VALUE_CODEC
         );
 
-        if (array == null || array.isEmpty()) {
-            return new ArrayList<>();
+        if (stored == null || stored.isNull()) {
+            return Collections.emptyList();
         }
 
-        List<ItemStack> result = new ArrayList<>();
+        String instanceId = getInstanceId(backpack);
+        if (instanceId != null) {
+            List<ItemStack> cached = BackpackContentsCache.get(instanceId, stored);
+            if (cached != null) return cached;
+        }
 
-        for (BsonValue val : array) {
-            if (val == null || val.isNull()) {
-                result.add(null);
-            } else {
-                result.add(ItemStack.CODEC.decode(
-                        val,
-                        ExtraInfo.THREAD_LOCAL.get()
-                ));
+        List<ItemStack> result;
+        if (stored.isInt64()) {
+            byte[] data = instanceId != null ? BackpackVault.read(instanceId, stored.asInt64().getValue()) : null;
+            if (data == null) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] No vault record for backpack " + instanceId);
+                return Collections.emptyList();
             }
+            result = BackpackContentsCodec.decodeCompact(data);
+        } else {
+            result = BackpackContentsCodec.decode(stored);
+        }
+
+        return instanceId != null
+                ? BackpackContentsCache.put(instanceId, stored, result)
+                : Collections.unmodifiableList(result);
+    }
+
+    @Nonnull
+    public static BackpackContentsSummary getSummary(@Nonnull ItemStack backpack) {
+        BackpackContentsSummary summary = BackpackContentsSummary.fromBson(
+                backpack.getFromMetadataOrNull(SUMMARY_KEY, BSON_VALUE_CODEC));
+        if (summary != null) return summary;
+
+        BsonValue stored = backpack.getFromMetadataOrNull(CONTENTS_KEY, BSON_VALUE_CODEC);
+        if (stored == null || stored.isNull()) return BackpackContentsSummary.EMPTY;
+
+        String instanceId = getInstanceId(backpack);
+        if (instanceId != null) {
+            BackpackContentsSummary cached = BackpackContentsCache.getSummary(instanceId, stored);
+            if (cached != null) return cached;
         }
 
-        return result;
+        return BackpackContentsSummary.of(contentsView(backpack));
     }
 
     public static boolean hasContents(@Nonnull ItemStack backpack) {
-        return loadContents(backpack).stream().anyMatch(i -> i != null && !i.isEmpty());
+        return !getSummary(backpack).isEmpty();
     }
 
     @Nullable
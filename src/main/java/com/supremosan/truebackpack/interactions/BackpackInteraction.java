@@ -286,6 +286,7 @@ public class BackpackInteraction extends SimpleInstantInteraction {
         }
 
         hotbar.getInventory().removeItemStackFromSlot(context.getHeldItemSlot(), 1, true, false);
+        BackpackItemFactory.releaseContents(heldItem);
     }
 
     private void handleChestTransfer(
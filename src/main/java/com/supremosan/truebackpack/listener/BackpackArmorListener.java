@@ -3,6 +3,7 @@ package com.supremosan.truebackpack.listener;
 import com.hypixel.hytale.component.*;
 import com.hypixel.hytale.component.query.Query;
 import com.hypixel.hytale.component.system.EntityEventSystem;
+import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.server.core.asset.type.model.config.ModelAttachment;
 import com.hypixel.hytale.server.core.entity.UUIDComponent;
 import com.hypixel.hytale.server.core.entity.entities.Player;
@@ -11,31 +12,41 @@ import com.hypixel.hytale.server.core.inventory.InventoryComponent;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.inventory.container.filter.FilterActionType;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
 import com.supremosan.truebackpack.cosmetic.BackpackVisualOverride;
 import com.supremosan.truebackpack.cosmetic.CosmeticPreferenceUtils;
+import com.supremosan.truebackpack.data.BackpackContentsSummary;
 import com.supremosan.truebackpack.data.BackpackDataStorage;
+import com.supremosan.truebackpack.data.BackpackInstanceIndex;
+import com.supremosan.truebackpack.data.BackpackPlayerState;
+import com.supremosan.truebackpack.data.BackpackPlayerState.PersistedContents;
+import com.supremosan.truebackpack.factory.BackpackContentsCodec;
+import com.supremosan.truebackpack.factory.BackpackContentsFormat.EncodedSlot;
 import com.supremosan.truebackpack.factory.BackpackItemFactory;
-import com.supremosan.truebackpack.registries.BackpackRegistry;
 import com.supremosan.truebackpack.registries.BackpackRegistry.BackpackEntry;
+import com.supremosan.truebackpack.registries.ItemClassIndex;
 import com.supremosan.truebackpack.registries.BackpackRegistry.HelipackConfig;
+import com.supremosan.truebackpack.system.BackpackContentsFlushSystem;
 import com.supremosan.truebackpack.system.HelipackFlySystem;
+import com.supremosan.truebackpack.system.HelipackState;
 import com.supremosan.truebackpack.ui.BackpackUIUpdater;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 public class BackpackArmorListener extends EntityEventSystem<EntityStore, InventoryChangeEvent> {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
     private static final String ATTACHMENT_SLOT_KEY = "truebackpack:backpack";
 
-    private static final Map<String, Short> BACKPACK_SIZES = new ConcurrentHashMap<>();
-    private static final Map<String, String[]> BACKPACK_VISUALS = new LinkedHashMap<>();
-
     public interface EquipChangeListener {
         void onEquipChange(@Nonnull String playerUuid, @Nonnull Player player, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref);
     }
@@ -45,12 +56,8 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
     private static final short CHEST_SLOT = 1;
     private static final short STORAGE_SLOT = 0;
 
-    private static final Map<String, String> LAST_KNOWN_EQUIPPED = new ConcurrentHashMap<>();
-    private static final Map<String, String> LAST_KNOWN_EQUIPPED_ITEM_ID = new ConcurrentHashMap<>();
-    private static final Map<String, Boolean> PROCESSING_EQUIP = new ConcurrentHashMap<>();
-    private static final Map<String, Boolean> PROCESSING_CONTAINER = new ConcurrentHashMap<>();
-    private static final Map<String, Integer> REFRESH_TIMES = new ConcurrentHashMap<>();
-    private static final Map<String, Boolean> REFRESH_UI = new ConcurrentHashMap<>();
+    private static final LongAdder CONTAINER_EVENTS = new LongAdder();
+    private static final LongAdder CONTENT_FLUSHES = new LongAdder();
 
     private static volatile Query<EntityStore> QUERY;
 
@@ -62,36 +69,23 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
         plugin.getEntityStoreRegistry().registerSystem(new BackpackArmorListener());
     }
 
-    public static void registerBackpack(@Nonnull String baseItemId, short sizeBonus, @Nonnull String modelPath, @Nonnull String texturePath) {
-        BACKPACK_SIZES.put(baseItemId, sizeBonus);
-        BACKPACK_VISUALS.put(baseItemId, new String[]{modelPath, texturePath, null, null});
-    }
-
     public static void addEquipChangeListener(@Nonnull EquipChangeListener listener) {
         EQUIP_CHANGE_LISTENERS.add(listener);
     }
 
-    public static boolean hasEquippedBackpack(@Nonnull String playerUuid) {
-        return LAST_KNOWN_EQUIPPED.containsKey(playerUuid);
+    public static boolean hasEquippedBackpack(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref) {
+        BackpackPlayerState state = store.getComponent(ref, BackpackPlayerState.TYPE);
+        return state != null && state.hasEquippedBackpack();
     }
 
     @Nullable
-    public static String getEquippedItemId(@Nonnull String playerUuid) {
-        return LAST_KNOWN_EQUIPPED_ITEM_ID.get(playerUuid);
+    public static String getEquippedItemId(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref) {
+        BackpackPlayerState state = store.getComponent(ref, BackpackPlayerState.TYPE);
+        return state != null ? state.getEquippedItemId() : null;
     }
 
     public static short getBackpackSize(@Nonnull String itemId) {
-        Short exact = BACKPACK_SIZES.get(itemId);
-        if (exact != null) return exact;
-        for (Map.Entry<String, Short> e : BACKPACK_SIZES.entrySet()) {
-            if (itemId.contains(e.getKey())) return e.getValue();
-        }
-        return 0;
-    }
-
-    public static void clear() {
-        BACKPACK_SIZES.clear();
-        BACKPACK_VISUALS.clear();
+        return ItemClassIndex.classify(itemId).backpackSize();
     }
 
     @Override
@@ -123,13 +117,26 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
         Player entity = archetypeChunk.getComponent(index, Player.getComponentType());
         if (entity == null) return;
 
-        if (CosmeticListener.isProcessing()) return;
-
         InventoryComponent.Armor armorComp = archetypeChunk.getComponent(index, InventoryComponent.Armor.getComponentType());
         InventoryComponent.Storage storageComp = archetypeChunk.getComponent(index, InventoryComponent.Storage.getComponentType());
         InventoryComponent.Backpack backpackComp = archetypeChunk.getComponent(index, InventoryComponent.Backpack.getComponentType());
         InventoryComponent.Hotbar hotbarComp = archetypeChunk.getComponent(index, InventoryComponent.Hotbar.getComponentType());
 
+        BackpackPlayerState state = archetypeChunk.getComponent(index, BackpackPlayerState.TYPE);
+        if (state == null) {
+            LOGGER.atSevere().log("[TrueBackpack] Player %s has no BackpackPlayerState, ignoring inventory change", playerUuid);
+            return;
+        }
+
+        updateInstanceIndex(event, state, armorComp, storageComp, backpackComp, hotbarComp);
+
+        HelipackState helipackState = archetypeChunk.getComponent(index, HelipackState.TYPE);
+        if (helipackState != null && backpackComp != null
+                && event.getComponentType() == InventoryComponent.Backpack.getComponentType()) {
+            helipackState.getFuelTally().update(event, backpackComp.getInventory());
+        }
+
+        if (CosmeticListener.isProcessing()) return;
         if (armorComp == null || storageComp == null) return;
 
         boolean isBackpackEvent = event.getComponentType() == InventoryComponent.Backpack.getComponentType();
@@ -137,7 +144,9 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
         boolean isStorageEvent = event.getComponentType() == InventoryComponent.Storage.getComponentType();
 
         if (isBackpackEvent) {
-            handleBackpackContainerChange(armorComp, storageComp, backpackComp, hotbarComp, playerUuid);
+            if (handleBackpackContainerChange(ref, event, state, armorComp, storageComp, backpackComp, hotbarComp, playerUuid)) {
+                BackpackTooltipListener.refreshEquippedTooltip(ref, store, armorComp);
+            }
             return;
         }
 
@@ -154,70 +163,319 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
 
         if (!isChestSlotModified && !isStorageSlotModified) return;
 
-        handleEquipContainerChange(entity, ref, store, armorComp, storageComp, backpackComp, hotbarComp, playerUuid);
+        handleEquipContainerChange(entity, ref, store, state, armorComp, storageComp, backpackComp, hotbarComp, playerUuid);
+        BackpackTooltipListener.refreshEquippedTooltip(ref, store, armorComp);
+        syncHelipackState(ref, store, commandBuffer, state);
 
-        if (Boolean.TRUE.equals(REFRESH_UI.get(playerUuid))) {
+        if (state.isRefreshUi()) {
             BackpackUIUpdater.updateBackpackUI(entity, ref, store);
-            REFRESH_UI.remove(playerUuid);
-            REFRESH_TIMES.remove(playerUuid);
+            state.setRefreshUi(false);
         }
     }
 
-    public static void onPlayerRemove(
-            @Nonnull String playerUuid,
-            @Nullable InventoryComponent.Armor armorComp,
-            @Nullable InventoryComponent.Storage storageComp,
-            @Nullable InventoryComponent.Backpack backpackComp,
-            @Nullable InventoryComponent.Hotbar hotbarComp) {
-        if (armorComp != null && storageComp != null) {
-            persistContainerToEquippedItem(armorComp, storageComp, backpackComp, hotbarComp, playerUuid);
+    private static void syncHelipackState(
+            @Nonnull Ref<EntityStore> ref,
+            @Nonnull Store<EntityStore> store,
+            @Nonnull CommandBuffer<EntityStore> commandBuffer,
+            @Nonnull BackpackPlayerState state) {
+        ItemClassIndex.ItemClass itemClass = ItemClassIndex.classify(state.getEquippedItemId());
+        boolean wearsHelipack = itemClass.is(ItemClassIndex.HELIPACK);
+        HelipackState existing = commandBuffer.getComponent(ref, HelipackState.TYPE);
+
+        if (wearsHelipack) {
+            HelipackState helipackState = existing != null ? existing : new HelipackState();
+            if (helipackState.setEquipped(state.getEquippedInstanceId(), state.getEquippedItemId())) {
+                helipackState.setConfig(itemClass.backpack() != null ? itemClass.backpack().helipackConfig() : null);
+                helipackState.getFuelTally().invalidate();
+            }
+            if (existing == null) commandBuffer.putComponent(ref, HelipackState.TYPE, helipackState);
+        } else if (existing != null) {
+            HelipackFlySystem.stopHelipackAnimation(ref, store);
+            commandBuffer.removeComponent(ref, HelipackState.TYPE);
         }
+    }
 
-        LAST_KNOWN_EQUIPPED.remove(playerUuid);
-        LAST_KNOWN_EQUIPPED_ITEM_ID.remove(playerUuid);
-        PROCESSING_EQUIP.remove(playerUuid);
-        PROCESSING_CONTAINER.remove(playerUuid);
-        REFRESH_UI.remove(playerUuid);
-        REFRESH_TIMES.remove(playerUuid);
+    public static void onPlayerRemove(@Nonnull String playerUuid) {
         BackpackDataStorage.clearActiveItem(playerUuid);
         CosmeticListener.onPlayerLeave(playerUuid);
     }
 
-    private void handleBackpackContainerChange(
+    public static void onPlayerDisconnect(@Nonnull PlayerRef playerRef) {
+        String playerUuid = playerRef.getUuid().toString();
+        Ref<EntityStore> ref = playerRef.getReference();
+        UUID worldUuid = playerRef.getWorldUuid();
+        World world = worldUuid != null ? Universe.get().getWorld(worldUuid) : null;
+
+        if (ref == null || !ref.isValid() || world == null) {
+            onPlayerRemove(playerUuid);
+            return;
+        }
+
+        world.execute(() -> {
+            if (ref.isValid()) {
+                Store<EntityStore> store = ref.getStore();
+                flushPendingContents(
+                        playerUuid,
+                        store.getComponent(ref, BackpackPlayerState.TYPE),
+                        store.getComponent(ref, InventoryComponent.Armor.getComponentType()),
+                        store.getComponent(ref, InventoryComponent.Storage.getComponentType()),
+                        store.getComponent(ref, InventoryComponent.Backpack.getComponentType()),
+                        store.getComponent(ref, InventoryComponent.Hotbar.getComponentType()));
+            }
+            onPlayerRemove(playerUuid);
+        });
+    }
+
+    private boolean handleBackpackContainerChange(
+            @Nonnull Ref<EntityStore> ref,
+            @Nonnull InventoryChangeEvent event,
+            @Nonnull BackpackPlayerState state,
             @Nonnull InventoryComponent.Armor armorComp,
             @Nonnull InventoryComponent.Storage storageComp,
             @Nullable InventoryComponent.Backpack backpackComp,
             @Nullable InventoryComponent.Hotbar hotbarComp,
             @Nonnull String playerUuid) {
-        if (Boolean.TRUE.equals(PROCESSING_CONTAINER.get(playerUuid))) return;
+        if (state.isProcessingContainer()) return false;
 
-        String equippedInstanceId = LAST_KNOWN_EQUIPPED.get(playerUuid);
-        if (equippedInstanceId == null) return;
+        String equippedInstanceId = state.getEquippedInstanceId();
+        if (equippedInstanceId == null) return false;
 
-        if (backpackComp == null) return;
+        if (backpackComp == null) return false;
 
-        PROCESSING_CONTAINER.put(playerUuid, Boolean.TRUE);
-        try {
-            ItemStack equippedItem = findByInstanceId(armorComp, storageComp, backpackComp, hotbarComp, equippedInstanceId);
-            if (equippedItem == null) return;
+        CONTAINER_EVENTS.increment();
+        BitSet modified = modifiedSlots(event, backpackComp.getInventory());
+
+        if (BackpackConfigService.settings().writeBehind) {
+            state.markDirty(modified);
+            BackpackContentsFlushSystem.markDirty(ref);
+            return false;
+        }
+
+        persistModifiedSlots(state, armorComp, storageComp, backpackComp, hotbarComp, playerUuid, equippedInstanceId, modified);
+        return true;
+    }
+
+    public static void flushPendingContents(
+            @Nonnull String playerUuid,
+            @Nullable BackpackPlayerState state,
+            @Nullable InventoryComponent.Armor armorComp,
+            @Nullable InventoryComponent.Storage storageComp,
+            @Nullable InventoryComponent.Backpack backpackComp,
+            @Nullable InventoryComponent.Hotbar hotbarComp) {
+        if (state == null || state.isProcessingContainer()) return;
+
+        BitSet dirty = state.takeDirtySlots();
+        if (dirty == null) return;
+        if (armorComp == null || storageComp == null || backpackComp == null) return;
 
-            ItemContainer equippedContainer = resolveEquipContainer(armorComp, storageComp, equippedItem);
-            short equippedSlot = resolveEquipSlot(armorComp, storageComp, equippedItem);
-            if (equippedContainer == null || equippedSlot < 0) return;
+        String equippedInstanceId = state.getEquippedInstanceId();
+        if (equippedInstanceId == null) return;
+
+        persistModifiedSlots(state, armorComp, storageComp, backpackComp, hotbarComp, playerUuid, equippedInstanceId, dirty);
+    }
+
+    @Nonnull
+    public static String describeWriteStats() {
+        long events = CONTAINER_EVENTS.sum();
+        long flushes = CONTENT_FLUSHES.sum();
+        return String.format("events=%d flushes=%d coalescing=%.2fx writeBehind=%s",
+                events, flushes, flushes == 0 ? 0.0 : (double) events / flushes,
+                BackpackConfigService.settings().writeBehind);
+    }
 
-            List<ItemStack> liveContents = getAllBackpackContents(backpackComp.getInventory());
-            BackpackDataStorage.setLiveContents(playerUuid, liveContents);
+    private static void persistModifiedSlots(
+            @Nonnull BackpackPlayerState state,
+            @Nonnull InventoryComponent.Armor armorComp,
+            @Nonnull InventoryComponent.Storage storageComp,
+            @Nonnull InventoryComponent.Backpack backpackComp,
+            @Nullable InventoryComponent.Hotbar hotbarComp,
+            @Nonnull String playerUuid,
+            @Nonnull String equippedInstanceId,
+            @Nonnull BitSet modified) {
+        CONTENT_FLUSHES.increment();
+        state.setProcessingContainer(true);
+        try {
+            ItemContainer bp = backpackComp.getInventory();
+            PersistedContents persisted = state.getPersistedContents();
 
-            List<ItemStack> savedContents = BackpackItemFactory.loadContents(equippedItem);
-            if (contentsEqual(savedContents, liveContents)) {
+            if (persisted != null
+                    && persisted.instanceId().equals(equippedInstanceId)
+                    && persisted.capacity() == bp.getCapacity()
+                    && patchModifiedSlots(modified, armorComp, storageComp, bp, persisted, playerUuid)) {
                 return;
             }
 
-            ItemStack updated = BackpackItemFactory.saveContents(equippedItem, liveContents);
-            equippedContainer.setItemStackForSlot(equippedSlot, updated);
+            rewriteAllSlots(state, armorComp, storageComp, backpackComp, hotbarComp, playerUuid, equippedInstanceId);
+        } finally {
+            state.setProcessingContainer(false);
+        }
+    }
 
+    private static void updateInstanceIndex(
+            @Nonnull InventoryChangeEvent event,
+            @Nonnull BackpackPlayerState state,
+            @Nullable InventoryComponent.Armor armorComp,
+            @Nullable InventoryComponent.Storage storageComp,
+            @Nullable InventoryComponent.Backpack backpackComp,
+            @Nullable InventoryComponent.Hotbar hotbarComp) {
+        ItemContainer[] containers = indexedContainers(armorComp, storageComp, backpackComp, hotbarComp);
+        int kind;
+        if (event.getComponentType() == InventoryComponent.Armor.getComponentType()) {
+            kind = BackpackInstanceIndex.ARMOR;
+        } else if (event.getComponentType() == InventoryComponent.Storage.getComponentType()) {
+            kind = BackpackInstanceIndex.STORAGE;
+        } else if (event.getComponentType() == InventoryComponent.Backpack.getComponentType()) {
+            kind = BackpackInstanceIndex.BACKPACK;
+        } else if (event.getComponentType() == InventoryComponent.Hotbar.getComponentType()) {
+            kind = BackpackInstanceIndex.HOTBAR;
+        } else {
+            return;
+        }
+
+        ItemContainer container = containers[kind];
+        if (container == null) return;
+
+        BackpackInstanceIndex instanceIndex = state.getInstanceIndex();
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            if (event.getTransaction().wasSlotModified(slot)) instanceIndex.update(kind, container, slot);
+        }
+    }
+
+    @Nonnull
+    private static ItemContainer[] indexedContainers(
+            @Nullable InventoryComponent.Armor armorComp,
+            @Nullable InventoryComponent.Storage storageComp,
+            @Nullable InventoryComponent.Backpack backpackComp,
+            @Nullable InventoryComponent.Hotbar hotbarComp) {
+        ItemContainer[] containers = new ItemContainer[BackpackInstanceIndex.CONTAINER_KINDS];
+        containers[BackpackInstanceIndex.ARMOR] = armorComp != null ? armorComp.getInventory() : null;
+        containers[BackpackInstanceIndex.STORAGE] = storageComp != null ? storageComp.getInventory() : null;
+        containers[BackpackInstanceIndex.BACKPACK] = backpackComp != null ? backpackComp.getInventory() : null;
+        containers[BackpackInstanceIndex.HOTBAR] = hotbarComp != null ? hotbarComp.getInventory() : null;
+        return containers;
+    }
+
+    @Nonnull
+    private static BitSet modifiedSlots(@Nonnull InventoryChangeEvent event, @Nonnull ItemContainer bp) {
+        BitSet modified = new BitSet(bp.getCapacity());
+        for (short slot = 0; slot < bp.getCapacity(); slot++) {
+            if (event.getTransaction().wasSlotModified(slot)) modified.set(slot);
+        }
+        return modified;
+    }
+
+    private static boolean patchModifiedSlots(
+            @Nonnull BitSet modified,
+            @Nonnull InventoryComponent.Armor armorComp,
+            @Nonnull InventoryComponent.Storage storageComp,
+            @Nonnull ItemContainer bp,
+            @Nonnull PersistedContents persisted,
+            @Nonnull String playerUuid) {
+        ItemStack equippedItem = persisted.lastWritten();
+        ItemContainer equippedContainer = resolveEquipContainer(armorComp, storageComp, equippedItem);
+        short equippedSlot = resolveEquipSlot(armorComp, storageComp, equippedItem);
+        if (equippedContainer == null || equippedSlot < 0) return false;
+        if (equippedContainer.getItemStack(equippedSlot) != equippedItem) return false;
+
+        boolean changed = false;
+        for (int slot = modified.nextSetBit(0); slot >= 0 && slot < bp.getCapacity(); slot = modified.nextSetBit(slot + 1)) {
+            ItemStack item = bp.getItemStack((short) slot);
+            if (slotEqual(persisted.item(slot), item)) continue;
+
+            ItemStack normalized = ItemStack.isEmpty(item) ? null : item;
+            persisted.set(slot, normalized, BackpackContentsCodec.encodeSlot(normalized));
+            changed = true;
+        }
+
+        BackpackDataStorage.setLiveContents(playerUuid, new ArrayList<>(persisted.items()));
+        if (!changed) return true;
+
+        ItemStack updated = BackpackItemFactory.saveEncodedContents(equippedItem, persisted.items(), persisted.slots());
+        equippedContainer.setItemStackForSlot(equippedSlot, updated);
+        persisted.setLastWritten(updated);
+        return true;
+    }
+
+    private static void rewriteAllSlots(
+            @Nonnull BackpackPlayerState state,
+            @Nonnull InventoryComponent.Armor armorComp,
+            @Nonnull InventoryComponent.Storage storageComp,
+            @Nonnull InventoryComponent.Backpack backpackComp,
+            @Nullable InventoryComponent.Hotbar hotbarComp,
+            @Nonnull String playerUuid,
+            @Nonnull String equippedInstanceId) {
+        state.clearPersistedContents();
+
+        ItemStack equippedItem = findByInstanceId(state, armorComp, storageComp, backpackComp, hotbarComp, equippedInstanceId);
+        if (equippedItem == null) return;
+
+        ItemContainer equippedContainer = resolveEquipContainer(armorComp, storageComp, equippedItem);
+        short equippedSlot = resolveEquipSlot(armorComp, storageComp, equippedItem);
+        if (equippedContainer == null || equippedSlot < 0) return;
+
+        List<ItemStack> liveContents = getAllBackpackContents(backpackComp.getInventory());
+        BackpackDataStorage.setLiveContents(playerUuid, liveContents);
+
+        List<ItemStack> normalized = new ArrayList<>(liveContents.size());
+        List<EncodedSlot> slots = new ArrayList<>(liveContents.size());
+        for (ItemStack item : liveContents) {
+            ItemStack stack = ItemStack.isEmpty(item) ? null : item;
+            normalized.add(stack);
+            slots.add(BackpackContentsCodec.encodeSlot(stack));
+        }
+
+        ItemStack written = equippedItem;
+        if (!storedContentsMatch(equippedItem, normalized)) {
+            written = BackpackItemFactory.saveEncodedContents(equippedItem, normalized, slots);
+            equippedContainer.setItemStackForSlot(equippedSlot, written);
+        }
+
+        state.setPersistedContents(
+                new PersistedContents(equippedInstanceId, normalized, slots, written));
+    }
+
+    static void flushBeforeEquipChange(
+            @Nonnull BackpackPlayerState state,
+            @Nonnull ItemContainer[] containers,
+            @Nonnull ItemContainer bp,
+            @Nonnull String instanceId) {
+        BitSet dirty = state.takeDirtySlots();
+        PersistedContents persisted = state.getPersistedContents();
+        boolean tracked = persisted != null
+                && persisted.instanceId().equals(instanceId)
+                && persisted.capacity() == bp.getCapacity();
+        if (tracked && dirty == null) return;
+
+        int location = state.getInstanceIndex().locate(containers, instanceId);
+        if (location == BackpackInstanceIndex.NOT_FOUND) return;
+
+        ItemContainer container = BackpackInstanceIndex.container(containers, location);
+        short slot = BackpackInstanceIndex.slot(location);
+        ItemStack previousItem = container.getItemStack(slot);
+
+        state.setProcessingContainer(true);
+        try {
+            ItemStack written;
+            if (tracked) {
+                for (int i = dirty.nextSetBit(0); i >= 0 && i < bp.getCapacity(); i = dirty.nextSetBit(i + 1)) {
+                    ItemStack item = bp.getItemStack((short) i);
+                    ItemStack normalized = ItemStack.isEmpty(item) ? null : item;
+                    persisted.set(i, normalized, BackpackContentsCodec.encodeSlot(normalized));
+                }
+                written = BackpackItemFactory.saveEncodedContents(previousItem, persisted.items(), persisted.slots());
+                persisted.setLastWritten(written);
+            } else {
+                List<ItemStack> liveContents = new ArrayList<>(bp.getCapacity());
+                for (ItemStack item : getAllBackpackContents(bp)) {
+                    liveContents.add(ItemStack.isEmpty(item) ? null : item);
+                }
+                if (storedContentsMatch(previousItem, liveContents)) return;
+                written = BackpackItemFactory.saveContents(previousItem, liveContents);
+            }
+            container.setItemStackForSlot(slot, written);
+            CONTENT_FLUSHES.increment();
         } finally {
-            PROCESSING_CONTAINER.remove(playerUuid);
+            state.setProcessingContainer(false);
         }
     }
 
@@ -225,24 +483,25 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
             @Nonnull Player entity,
             @Nonnull Ref<EntityStore> ref,
             @Nonnull Store<EntityStore> store,
+            @Nonnull BackpackPlayerState state,
             @Nonnull InventoryComponent.Armor armorComp,
             @Nonnull InventoryComponent.Storage storageComp,
             @Nullable InventoryComponent.Backpack backpackComp,
             @Nullable InventoryComponent.Hotbar hotbarComp,
             @Nonnull String playerUuid) {
-        if (Boolean.TRUE.equals(PROCESSING_EQUIP.get(playerUuid))) return;
+        if (state.isProcessingEquip()) return;
 
         ItemStack liveArmor = armorComp.getInventory().getItemStack(CHEST_SLOT);
         ItemStack liveStorage = storageComp.getInventory().getItemStack(STORAGE_SLOT);
 
         ItemStack currentEquipped = resolveEquipped(liveArmor, liveStorage);
-        String lastKnownId = LAST_KNOWN_EQUIPPED.get(playerUuid);
+        String lastKnownId = state.getEquippedInstanceId();
         String currentId = currentEquipped != null ? BackpackItemFactory.getInstanceId(currentEquipped) : null;
 
         if (currentId != null && currentId.equals(lastKnownId)) return;
 
         if (currentId == null && lastKnownId != null && currentEquipped != null) {
-            String lastItemId = LAST_KNOWN_EQUIPPED_ITEM_ID.get(playerUuid);
+            String lastItemId = state.getEquippedItemId();
             if (currentEquipped.getItemId().equals(lastItemId)) {
                 ItemContainer equipContainer = resolveEquipContainer(armorComp, storageComp, currentEquipped);
                 short equipSlot = resolveEquipSlot(armorComp, storageComp, currentEquipped);
@@ -254,64 +513,47 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
             }
         }
 
+        if (lastKnownId != null && backpackComp != null) {
+            flushBeforeEquipChange(state,
+                    indexedContainers(armorComp, storageComp, backpackComp, hotbarComp),
+                    backpackComp.getInventory(), lastKnownId);
+        }
+
         short newBonus = bonus(currentEquipped);
         boolean hadBackpack = lastKnownId != null;
         boolean hasBackpack = newBonus > 0;
 
         if (!hadBackpack && !hasBackpack) {
-            LAST_KNOWN_EQUIPPED.remove(playerUuid);
-            LAST_KNOWN_EQUIPPED_ITEM_ID.remove(playerUuid);
+            state.clearEquipped();
             return;
         }
 
         ItemStack previousItem = lastKnownId != null
-                ? findByInstanceId(armorComp, storageComp, backpackComp, hotbarComp, lastKnownId)
+                ? findByInstanceId(state, armorComp, storageComp, backpackComp, hotbarComp, lastKnownId)
                 : null;
         short oldBonus = previousItem != null ? bonus(previousItem) : (hadBackpack ? (short) 1 : (short) 0);
 
         if (oldBonus == 0 && newBonus == 0) {
-            LAST_KNOWN_EQUIPPED.remove(playerUuid);
-            LAST_KNOWN_EQUIPPED_ITEM_ID.remove(playerUuid);
+            state.clearEquipped();
             return;
         }
 
-        if (hadBackpack && backpackComp != null) {
-            ItemStack itemToPersist = previousItem;
-            if (itemToPersist == null) {
-                itemToPersist = findByInstanceId(armorComp, storageComp, backpackComp, hotbarComp, lastKnownId);
-            }
-            if (itemToPersist != null) {
-                ItemContainer persistContainer = resolveEquipContainer(armorComp, storageComp, itemToPersist);
-                short persistSlot = resolveEquipSlot(armorComp, storageComp, itemToPersist);
-                if (persistContainer != null && persistSlot >= 0) {
-                    List<ItemStack> liveContents = getAllBackpackContents(backpackComp.getInventory());
-                    ItemStack saved = BackpackItemFactory.saveContents(itemToPersist, liveContents);
-                    persistContainer.setItemStackForSlot(persistSlot, saved);
-                }
-            }
-        }
-
-        PROCESSING_EQUIP.put(playerUuid, Boolean.TRUE);
+        state.setProcessingEquip(true);
         try {
-            String finalInstanceId = processEquipChange(entity, ref, store, armorComp, storageComp, backpackComp, hotbarComp, playerUuid, currentEquipped, newBonus);
+            String finalInstanceId = processEquipChange(entity, ref, store, state, armorComp, storageComp, backpackComp, hotbarComp, playerUuid, currentEquipped, newBonus);
 
             if (finalInstanceId != null) {
-                LAST_KNOWN_EQUIPPED.put(playerUuid, finalInstanceId);
-                if (currentEquipped != null) {
-                    LAST_KNOWN_EQUIPPED_ITEM_ID.put(playerUuid, currentEquipped.getItemId());
-                }
+                state.setEquipped(finalInstanceId, currentEquipped != null ? currentEquipped.getItemId() : null);
             } else {
-                LAST_KNOWN_EQUIPPED.remove(playerUuid);
-                LAST_KNOWN_EQUIPPED_ITEM_ID.remove(playerUuid);
+                state.clearEquipped();
             }
 
             for (EquipChangeListener listener : EQUIP_CHANGE_LISTENERS) {
                 listener.onEquipChange(playerUuid, entity, store, ref);
             }
         } finally {
-            PROCESSING_EQUIP.remove(playerUuid);
-            REFRESH_TIMES.remove(playerUuid);
-            REFRESH_UI.put(playerUuid, Boolean.TRUE);
+            state.setProcessingEquip(false);
+            state.setRefreshUi(true);
         }
     }
 
@@ -320,6 +562,7 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
             @Nonnull Player entity,
             @Nonnull Ref<EntityStore> ref,
             @Nonnull Store<EntityStore> store,
+            @Nonnull BackpackPlayerState state,
             @Nonnull InventoryComponent.Armor armorComp,
             @Nonnull InventoryComponent.Storage storageComp,
             @Nullable InventoryComponent.Backpack backpackComp,
@@ -327,7 +570,7 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
             @Nonnull String playerUuid,
             @Nullable ItemStack newItem,
             short newBonus) {
-        String lastKnownId = LAST_KNOWN_EQUIPPED.get(playerUuid);
+        String lastKnownId = state.getEquippedInstanceId();
 
         if (newBonus > 0 && newItem != null) {
             ItemContainer equipContainer = resolveEquipContainer(armorComp, storageComp, newItem);
@@ -341,72 +584,69 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
             }
 
             if (lastKnownId != null) {
-                clearEquippedFlagByInstanceId(armorComp, storageComp, backpackComp, hotbarComp, lastKnownId);
+                clearEquippedFlagByInstanceId(state, armorComp, storageComp, backpackComp, hotbarComp, lastKnownId);
             }
 
             newItem = ensureInstanceId(newItem, equipContainer, equipSlot);
+            String newInstanceId = BackpackItemFactory.getInstanceId(newItem);
+            if (newInstanceId != null) state.setEquipped(newInstanceId, newItem.getItemId());
 
             List<ItemStack> savedContents = BackpackItemFactory.hasContents(newItem)
                     ? BackpackItemFactory.loadContents(newItem)
                     : null;
 
-            applyBackpackResize(backpackComp, playerUuid, newItem, newBonus, equipContainer, savedContents);
+            applyBackpackResize(backpackComp, state, playerUuid, newItem, newBonus, equipContainer, savedContents);
             updateVisual(entity, store, ref, playerUuid, newItem);
             return BackpackItemFactory.getInstanceId(newItem);
         }
 
         if (lastKnownId != null) {
-            clearEquippedFlagByInstanceId(armorComp, storageComp, backpackComp, hotbarComp, lastKnownId);
+            clearEquippedFlagByInstanceId(state, armorComp, storageComp, backpackComp, hotbarComp, lastKnownId);
         }
 
-        applyBackpackResize(backpackComp, playerUuid, null, (short) 0, null, null);
+        applyBackpackResize(backpackComp, state, playerUuid, null, (short) 0, null, null);
         updateVisual(entity, store, ref, playerUuid, null);
         return null;
     }
 
     private static void clearEquippedFlagByInstanceId(
+            @Nonnull BackpackPlayerState state,
             @Nonnull InventoryComponent.Armor armorComp,
             @Nonnull InventoryComponent.Storage storageComp,
             @Nullable InventoryComponent.Backpack backpackComp,
             @Nullable InventoryComponent.Hotbar hotbarComp,
             @Nonnull String instanceId) {
-        ItemContainer[] containers = {
-                armorComp.getInventory(),
-                storageComp.getInventory(),
-                hotbarComp != null ? hotbarComp.getInventory() : null,
-                backpackComp != null ? backpackComp.getInventory() : null
-        };
-        for (ItemContainer container : containers) {
-            if (container == null) continue;
-            for (short slot = 0; slot < container.getCapacity(); slot++) {
-                ItemStack candidate = container.getItemStack(slot);
-                if (candidate == null || candidate.isEmpty()) continue;
-                if (instanceId.equals(BackpackItemFactory.getInstanceId(candidate))) {
-                    if (BackpackItemFactory.isEquipped(candidate)) {
-                        container.setItemStackForSlot(slot, BackpackItemFactory.setEquipped(candidate, false));
-                    }
-                    return;
-                }
-            }
+        ItemContainer[] containers = indexedContainers(armorComp, storageComp, backpackComp, hotbarComp);
+        int location = state.getInstanceIndex().locate(containers, instanceId);
+        if (location == BackpackInstanceIndex.NOT_FOUND) return;
+
+        ItemContainer container = BackpackInstanceIndex.container(containers, location);
+        short slot = BackpackInstanceIndex.slot(location);
+        ItemStack candidate = container.getItemStack(slot);
+        if (BackpackItemFactory.isEquipped(candidate)) {
+            container.setItemStackForSlot(slot, BackpackItemFactory.setEquipped(candidate, false));
         }
     }
 
     private void applyBackpackResize(
             @Nullable InventoryComponent.Backpack backpackComp,
+            @Nonnull BackpackPlayerState state,
             @Nonnull String playerUuid,
             @Nullable ItemStack equippedItem,
             short newBonus,
             @Nullable ItemContainer equipContainer,
             @Nullable List<ItemStack> preloadedContents) {
-        PROCESSING_CONTAINER.put(playerUuid, Boolean.TRUE);
+        state.setProcessingContainer(true);
+        state.clearPersistedContents();
         try {
             if (backpackComp == null) return;
 
             backpackComp.resize(newBonus, new ObjectArrayList<>());
+            state.getInstanceIndex().invalidate();
 
             if (newBonus > 0 && equipContainer != null) {
                 ItemContainer bp = backpackComp.getInventory();
-                String fuelItemId = resolveFuelItemId(equippedItem);
+                String fuelItemId = resolveFuelItemId(equippedItem != null ? equippedItem.getItemId() : null);
 
                 List<ItemStack> contentsToRestore = preloadedContents != null
                         ? preloadedContents
@@ -435,14 +675,17 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
                 BackpackDataStorage.clearActiveItem(playerUuid);
             }
         } finally {
-            PROCESSING_CONTAINER.remove(playerUuid);
+            state.setProcessingContainer(false);
         }
     }
 
     @Nullable
-    private static String resolveFuelItemId(@Nullable ItemStack equippedItem) {
-        if (equippedItem == null) return null;
-        BackpackEntry entry = BackpackRegistry.getByItem(equippedItem.getItemId());
+    public static String resolveFuelItemId(@Nullable String equippedItemId) {
+        return fuelItemId(ItemClassIndex.classify(equippedItemId).backpack());
+    }
+
+    @Nullable
+    private static String fuelItemId(@Nullable BackpackEntry entry) {
         if (entry == null || !entry.isHelipack()) return null;
         HelipackConfig config = entry.helipackConfig();
         if (config == null || !config.requiresFuel()) return null;
@@ -476,34 +719,11 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
         CosmeticListener.scheduleRebuild(entity, store, ref, playerUuid);
     }
 
-    private static void persistContainerToEquippedItem(
-            @Nonnull InventoryComponent.Armor armorComp,
-            @Nonnull InventoryComponent.Storage storageComp,
-            @Nullable InventoryComponent.Backpack backpackComp,
-            @Nullable InventoryComponent.Hotbar hotbarComp,
-            @Nonnull String playerUuid) {
-        String equippedInstanceId = LAST_KNOWN_EQUIPPED.get(playerUuid);
-        if (equippedInstanceId == null) return;
-
-        ItemStack equippedItem = findByInstanceId(armorComp, storageComp, backpackComp, hotbarComp, equippedInstanceId);
-        if (equippedItem == null) return;
-
-        ItemContainer equippedContainer = resolveEquipContainer(armorComp, storageComp, equippedItem);
-        short equippedSlot = resolveEquipSlot(armorComp, storageComp, equippedItem);
-        if (equippedContainer == null || equippedSlot < 0) return;
-
-        if (backpackComp == null) return;
-        List<ItemStack> liveContents = getAllBackpackContents(backpackComp.getInventory());
-        ItemStack updated = BackpackItemFactory.saveContents(equippedItem, liveContents);
-        equippedContainer.setItemStackForSlot(equippedSlot, updated);
-    }
-
     public static void syncBackpackAttachment(
             @Nonnull String playerUuid,
             @Nonnull Store<EntityStore> store,
             @Nonnull Ref<EntityStore> ref) {
-        if (!hasEquippedBackpack(playerUuid)) return;
-        if (LAST_KNOWN_EQUIPPED.get(playerUuid) == null) return;
+        if (!hasEquippedBackpack(store, ref)) return;
 
         InventoryComponent.Armor armorComp = store.getComponent(ref, InventoryComponent.Armor.getComponentType());
         InventoryComponent.Storage storageComp = store.getComponent(ref, InventoryComponent.Storage.getComponentType());
@@ -556,26 +776,16 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
 
     @Nullable
     private static ItemStack findByInstanceId(
+            @Nonnull BackpackPlayerState state,
             @Nonnull InventoryComponent.Armor armorComp,
             @Nonnull InventoryComponent.Storage storageComp,
             @Nullable InventoryComponent.Backpack backpackComp,
             @Nullable InventoryComponent.Hotbar hotbarComp,
             @Nonnull String targetId) {
-        ItemContainer[] containers = {
-                armorComp.getInventory(),
-                storageComp.getInventory(),
-                backpackComp != null ? backpackComp.getInventory() : null,
-                hotbarComp != null ? hotbarComp.getInventory() : null
-        };
-        for (ItemContainer container : containers) {
-            if (container == null) continue;
-            for (short slot = 0; slot < container.getCapacity(); slot++) {
-                ItemStack candidate = container.getItemStack(slot);
-                if (candidate == null || candidate.isEmpty()) continue;
-                if (targetId.equals(BackpackItemFactory.getInstanceId(candidate))) return candidate;
-            }
-        }
-        return null;
+        ItemContainer[] containers = indexedContainers(armorComp, storageComp, backpackComp, hotbarComp);
+        int location = state.getInstanceIndex().locate(containers, targetId);
+        if (location == BackpackInstanceIndex.NOT_FOUND) return null;
+        return BackpackInstanceIndex.container(containers, location).getItemStack(BackpackInstanceIndex.slot(location));
     }
 
     @Nonnull
@@ -614,20 +824,28 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
         }
     }
 
+    private static boolean storedContentsMatch(@Nonnull ItemStack backpack, @Nonnull List<ItemStack> liveContents) {
+        BackpackContentsSummary stored = BackpackItemFactory.getSummary(backpack);
+        if (!stored.equals(BackpackContentsSummary.of(liveContents))) return false;
+        return contentsEqual(BackpackItemFactory.contentsView(backpack), liveContents);
+    }
+
     private static boolean contentsEqual(@Nonnull List<ItemStack> a, @Nonnull List<ItemStack> b) {
         if (a.size() != b.size()) return false;
         for (int i = 0; i < a.size(); i++) {
-            ItemStack sa = a.get(i);
-            ItemStack sb = b.get(i);
-            boolean aEmpty = sa == null || sa.isEmpty();
-            boolean bEmpty = sb == null || sb.isEmpty();
-            if (aEmpty && bEmpty) continue;
-            if (aEmpty != bEmpty) return false;
-            if (!sa.equals(sb)) return false;
+            if (!slotEqual(a.get(i), b.get(i))) return false;
         }
         return true;
     }
 
+    private static boolean slotEqual(@Nullable ItemStack a, @Nullable ItemStack b) {
+        boolean aEmpty = a == null || a.isEmpty();
+        boolean bEmpty = b == null || b.isEmpty();
+        if (aEmpty && bEmpty) return true;
+        if (aEmpty != bEmpty) return false;
+        return a.equals(b);
+    }
+
     @Nullable
     private static String findEquippedItemId(
             @Nonnull InventoryComponent.Armor armorComp,
@@ -642,16 +860,8 @@ public class BackpackArmorListener extends EntityEventSystem<EntityStore, Invent
     @Nullable
     private static ModelAttachment resolveVisual(@Nullable String itemId) {
         if (itemId == null) return null;
-        String[] exact = BACKPACK_VISUALS.get(itemId);
-        if (exact != null) return toAttachment(exact);
-        for (Map.Entry<String, String[]> e : BACKPACK_VISUALS.entrySet()) {
-            if (itemId.contains(e.getKey())) return toAttachment(e.getValue());
-        }
-        return null;
-    }
-
-    @Nonnull
-    private static ModelAttachment toAttachment(@Nonnull String[] v) {
-        return new ModelAttachment(v[0], v[1], v[2], v[3], 1.0);
+        BackpackEntry entry = ItemClassIndex.classify(itemId).backpack();
+        if (entry == null) return null;
+        return new ModelAttachment(entry.model(), entry.texture(), null, null, 1.0);
     }
 }
\ No newline at end of file
@@ -9,9 +9,8 @@ import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.data.BackpackPlayerState;
 import com.supremosan.truebackpack.registries.BackpackRegistry;
-import com.supremosan.truebackpack.registries.BackpackRegistry.BackpackEntry;
-import com.supremosan.truebackpack.registries.BackpackRegistry.HelipackConfig;
 
 import javax.annotation.Nonnull;
 import java.util.Set;
@@ -67,41 +66,14 @@ public class BackpackNestingListener extends RefSystem<EntityStore> {
 
             if (changed != backpackContainer) return;
 
-            String equippedFuelItemId = resolveEquippedFuelItemId(ref, store);
+            BackpackPlayerState state = store.getComponent(ref, BackpackPlayerState.TYPE);
+            String equippedFuelItemId = BackpackArmorListener.resolveFuelItemId(
+                    state != null ? state.getEquippedItemId() : null);
             handleModifiedSlots(event, changed, equippedFuelItemId);
             return;
         }
     }
 
-    private String resolveEquippedFuelItemId(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store) {
-        InventoryComponent.Armor armorComp = store.getComponent(ref, InventoryComponent.Armor.getComponentType());
-        if (armorComp != null) {
-            ItemStack chestStack = armorComp.getInventory().getItemStack((short) 1);
-            if (chestStack != null && !chestStack.isEmpty()) {
-                String fuelId = getFuelItemId(chestStack.getItemId());
-                if (fuelId != null) return fuelId;
-            }
-        }
-
-        InventoryComponent.Storage storageComp = store.getComponent(ref, InventoryComponent.Storage.getComponentType());
-        if (storageComp != null) {
-            ItemStack storageStack = storageComp.getInventory().getItemStack((short) 0);
-            if (storageStack != null && !storageStack.isEmpty()) {
-                return getFuelItemId(storageStack.getItemId());
-            }
-        }
-
-        return null;
-    }
-
-    private String getFuelItemId(@Nonnull String itemId) {
-        BackpackEntry entry = BackpackRegistry.getByItem(itemId);
-        if (entry == null || !entry.isHelipack()) return null;
-        HelipackConfig config = entry.helipackConfig();
-        if (config == null || !config.requiresFuel()) return null;
-        return config.fuelItemId();
-    }
-
     private void handleModifiedSlots(@Nonnull InventoryChangeEvent event,
                                      @Nonnull ItemContainer container,
                                      String requiredFuelItemId) {
@@ -1,5 +1,12 @@
 package com.supremosan.truebackpack.listener;
 
+import com.hypixel.hytale.assetstore.event.LoadedAssetsEvent;
+import com.hypixel.hytale.component.ArchetypeChunk;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.EntityEventSystem;
 import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.protocol.*;
 import com.hypixel.hytale.protocol.packets.assets.UpdateItems;
@@ -9,38 +16,193 @@ import com.hypixel.hytale.protocol.packets.interaction.SyncInteractionChains;
 import com.hypixel.hytale.protocol.packets.inventory.UpdatePlayerInventory;
 import com.hypixel.hytale.protocol.packets.player.MouseInteraction;
 import com.hypixel.hytale.server.core.asset.type.item.config.Item;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.event.events.ecs.InventoryChangeEvent;
+import com.hypixel.hytale.server.core.inventory.InventoryComponent;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.io.adapter.PacketAdapters;
 import com.hypixel.hytale.server.core.io.adapter.PacketFilter;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.data.BackpackContentsSummary;
 import com.supremosan.truebackpack.data.BackpackDataStorage;
+import com.supremosan.truebackpack.factory.BackpackItemFactory;
+import com.supremosan.truebackpack.registries.ItemClassIndex;
+import com.supremosan.truebackpack.registries.RegistryGeneration;
 import com.supremosan.truebackpack.ui.BackpackTooltipProvider;
+import com.supremosan.truebackpack.util.BoundedCache;
 import org.bson.BsonDocument;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 public class BackpackTooltipListener {
 
     private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
 
-    private static final String VIRTUAL_SEP = "__bp_";
+    private static final String VIRTUAL_SEP = ItemClassIndex.VIRTUAL_ID_SEPARATOR;
+    private static final int VIRTUAL_HASH_LENGTH = 8;
+    private static final int VIRTUAL_SUFFIX_LENGTH = VIRTUAL_SEP.length() + VIRTUAL_HASH_LENGTH;
+    private static final String HASH_PADDING = "00000000";
     private static final String DESC_KEY_PREFIX = "server.items.dynamic.backpack.";
 
+    private static final int TOOLTIP_CACHE_SIZE = 1024;
+    private static final int VIRTUAL_ITEM_TABLE_SIZE = 4096;
+    private static final int MAX_SENT_VIRTUAL_IDS = 256;
+
+    private static final int CHEST_SLOT = 1;
+
+    private static final int HOTBAR = 0;
+    private static final int UTILITY = 1;
+    private static final int TOOLS = 2;
+    private static final int STORAGE = 3;
+    private static final int BACKPACK = 4;
+    private static final int ARMOR = 5;
+    private static final int SECTION_COUNT = 6;
+
+    private record TooltipKey(@Nonnull String itemId,
+                              @Nonnull String metadata,
+                              @Nullable String language,
+                              long generation) {
+    }
+
+    private record CachedTooltip(@Nullable String tooltip,
+                                 @Nullable String virtualId,
+                                 @Nullable String descKey,
+                                 @Nullable ItemBase base) {
+        private static final CachedTooltip NONE = new CachedTooltip(null, null, null, null);
+    }
+
+    private record StackTooltipKey(@Nonnull String itemId,
+                                   boolean equipped,
+                                   @Nonnull BackpackContentsSummary summary,
+                                   @Nullable String language,
+                                   long generation) {
+    }
+
+    private record SlotTooltip(@Nonnull String itemId,
+                               @Nullable String metadata,
+                               @Nonnull CachedTooltip tooltip,
+                               @Nullable List<ItemStack> liveContents) {
+
+        boolean matches(@Nonnull ItemWithAllMetadata item) {
+            return itemId.equals(item.itemId) && Objects.equals(metadata, item.metadata);
+        }
+    }
+
+    private static final class PlayerTooltips {
+        private final String language;
+        private final long generation;
+        private final AtomicReferenceArray<Map<Integer, SlotTooltip>> sections =
+                new AtomicReferenceArray<>(SECTION_COUNT);
+
+        PlayerTooltips(@Nullable String language, long generation) {
+            this.language = language;
+            this.generation = generation;
+        }
+
+        boolean matches(@Nullable String language) {
+            return generation == RegistryGeneration.current() && Objects.equals(this.language, language);
+        }
+
+        @Nullable
+        Map<Integer, SlotTooltip> get(int section) {
+            return sections.get(section);
+        }
+
+        void set(int section, @Nonnull Map<Integer, SlotTooltip> tooltips) {
+            sections.set(section, tooltips);
+        }
+
+        boolean isEmpty() {
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                Map<Integer, SlotTooltip> tooltips = sections.get(section);
+                if (tooltips == null || !tooltips.isEmpty()) return false;
+            }
+            return true;
+        }
+
+        void collectVirtualIds(@Nonnull Set<String> into) {
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                Map<Integer, SlotTooltip> tooltips = sections.get(section);
+                if (tooltips == null) continue;
+                for (SlotTooltip slot : tooltips.values()) {
+                    String virtualId = slot.tooltip().virtualId();
+                    if (virtualId != null) into.add(virtualId);
+                }
+            }
+        }
+    }
+
+    private static final BoundedCache<TooltipKey, CachedTooltip> TOOLTIP_CACHE =
+            new BoundedCache<>(TOOLTIP_CACHE_SIZE);
+
+    private static final BoundedCache<StackTooltipKey, CachedTooltip> STACK_TOOLTIP_CACHE =
+            new BoundedCache<>(TOOLTIP_CACHE_SIZE);
+
+    private static final BoundedCache<String, ItemBase> VIRTUAL_ITEMS =
+            new BoundedCache<>(VIRTUAL_ITEM_TABLE_SIZE);
+
+    private static final BoundedCache<Map<String, String>, UpdateTranslations> TRANSLATION_PAYLOADS =
+            new BoundedCache<>(TOOLTIP_CACHE_SIZE);
+
+    private static final class SentVirtualIds {
+        private final LinkedHashMap<String, Boolean> ids = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized boolean add(@Nonnull String virtualId) {
+            return ids.put(virtualId, Boolean.TRUE) == null;
+        }
+
+        @Nonnull
+        synchronized List<String> evictOverflow(@Nonnull Set<String> inUse) {
+            if (ids.size() <= MAX_SENT_VIRTUAL_IDS) return Collections.emptyList();
+
+            List<String> evicted = new ArrayList<>();
+            Iterator<String> it = ids.keySet().iterator();
+            while (ids.size() > MAX_SENT_VIRTUAL_IDS && it.hasNext()) {
+                String eldest = it.next();
+                if (inUse.contains(eldest)) continue;
+                it.remove();
+                evicted.add(eldest);
+            }
+            return evicted;
+        }
+
+        @Nonnull
+        synchronized List<String> drain() {
+            List<String> drained = new ArrayList<>(ids.keySet());
+            ids.clear();
+            return drained;
+        }
+    }
+
     private static final ThreadLocal<Boolean> PROCESSING =
             ThreadLocal.withInitial(() -> false);
 
-    private static final Map<UUID, Set<String>> SENT_VIRTUAL_IDS = new ConcurrentHashMap<>();
-    private static final Map<UUID, Map<String, String>> LAST_SENT_TRANSLATIONS = new ConcurrentHashMap<>();
+    private static final Map<UUID, SentVirtualIds> SENT_VIRTUAL_IDS = new ConcurrentHashMap<>();
+    private static final Map<UUID, PlayerTooltips> PLAYER_TOOLTIPS = new ConcurrentHashMap<>();
+
+    private static final LongAdder PRECOMPUTED_APPLIED = new LongAdder();
+    private static final LongAdder FILTER_COMPUTED = new LongAdder();
+    private static final LongAdder FAST_REJECTS = new LongAdder();
+    private static final LongAdder SHARED_PAYLOADS = new LongAdder();
 
     private static PacketFilter outboundFilter;
     private static PacketFilter inboundFilter;
 
     private BackpackTooltipListener() {}
 
-    public static void register() {
+    public static void register(@Nonnull TrueBackpack plugin) {
+        plugin.getEntityStoreRegistry().registerSystem(new PrecomputeSystem());
+        plugin.getEventRegistry()
+                .registerGlobal(LoadedAssetsEvent.class, BackpackTooltipListener::onAssetsLoaded);
         outboundFilter = PacketAdapters.registerOutbound(BackpackTooltipListener::onOutbound);
         inboundFilter = PacketAdapters.registerInbound(BackpackTooltipListener::onInbound);
     }
@@ -66,14 +228,138 @@ public class BackpackTooltipListener {
         inboundFilter = null;
     }
 
+    private static void onAssetsLoaded(@Nonnull LoadedAssetsEvent<?, ?, ?> event) {
+        BackpackTooltipProvider.invalidate();
+        TOOLTIP_CACHE.clear();
+        STACK_TOOLTIP_CACHE.clear();
+        VIRTUAL_ITEMS.clear();
+        TRANSLATION_PAYLOADS.clear();
+        PLAYER_TOOLTIPS.clear();
+
+        Iterator<Map.Entry<UUID, SentVirtualIds>> it = SENT_VIRTUAL_IDS.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, SentVirtualIds> entry = it.next();
+            it.remove();
+            List<String> sent = entry.getValue().drain();
+            PlayerRef playerRef = Universe.get().getPlayer(entry.getKey());
+            if (playerRef != null && !sent.isEmpty()) sendRemoval(playerRef, sent);
+        }
+    }
+
     public static void onPlayerLeave(@Nonnull UUID uuid) {
         SENT_VIRTUAL_IDS.remove(uuid);
-        LAST_SENT_TRANSLATIONS.remove(uuid);
+        PLAYER_TOOLTIPS.remove(uuid);
+    }
+
+    public static void refreshEquippedTooltip(@Nonnull Ref<EntityStore> ref,
+                                              @Nonnull Store<EntityStore> store,
+                                              @Nullable InventoryComponent.Armor armorComp) {
+        PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+        if (playerRef == null) return;
+
+        PlayerTooltips tooltips = PLAYER_TOOLTIPS.get(playerRef.getUuid());
+        if (tooltips == null || !tooltips.matches(playerRef.getLanguage())) return;
+
+        tooltips.set(ARMOR, precomputeArmor(
+                armorComp != null ? armorComp.getInventory() : null,
+                playerRef.getUuid().toString(),
+                playerRef.getLanguage()));
+    }
+
+    private static void precompute(@Nonnull PlayerRef playerRef,
+                                   @Nonnull ArchetypeChunk<EntityStore> chunk,
+                                   int index,
+                                   @Nonnull InventoryChangeEvent event) {
+        UUID uuid = playerRef.getUuid();
+        String lang = playerRef.getLanguage();
+
+        PlayerTooltips tooltips = PLAYER_TOOLTIPS.get(uuid);
+        boolean full = tooltips == null || !tooltips.matches(lang);
+        if (full) tooltips = new PlayerTooltips(lang, RegistryGeneration.current());
+
+        if (full || event.getComponentType() == InventoryComponent.Hotbar.getComponentType()) {
+            InventoryComponent.Hotbar hotbar = chunk.getComponent(index, InventoryComponent.Hotbar.getComponentType());
+            tooltips.set(HOTBAR, precomputeContainer(hotbar != null ? hotbar.getInventory() : null, lang));
+        }
+        if (full || event.getComponentType() == InventoryComponent.Utility.getComponentType()) {
+            InventoryComponent.Utility utility = chunk.getComponent(index, InventoryComponent.Utility.getComponentType());
+            tooltips.set(UTILITY, precomputeContainer(utility != null ? utility.getInventory() : null, lang));
+        }
+        if (full || event.getComponentType() == InventoryComponent.Tool.getComponentType()) {
+            InventoryComponent.Tool tool = chunk.getComponent(index, InventoryComponent.Tool.getComponentType());
+            tooltips.set(TOOLS, precomputeContainer(tool != null ? tool.getInventory() : null, lang));
+        }
+        if (full || event.getComponentType() == InventoryComponent.Storage.getComponentType()) {
+            InventoryComponent.Storage storage = chunk.getComponent(index, InventoryComponent.Storage.getComponentType());
+            tooltips.set(STORAGE, precomputeContainer(storage != null ? storage.getInventory() : null, lang));
+        }
+        boolean backpackChanged = event.getComponentType() == InventoryComponent.Backpack.getComponentType();
+        if (full || backpackChanged) {
+            InventoryComponent.Backpack backpack = chunk.getComponent(index, InventoryComponent.Backpack.getComponentType());
+            tooltips.set(BACKPACK, precomputeContainer(backpack != null ? backpack.getInventory() : null, lang));
+        }
+        if (full || backpackChanged || event.getComponentType() == InventoryComponent.Armor.getComponentType()) {
+            InventoryComponent.Armor armor = chunk.getComponent(index, InventoryComponent.Armor.getComponentType());
+            tooltips.set(ARMOR, precomputeArmor(armor != null ? armor.getInventory() : null, uuid.toString(), lang));
+        }
+
+        if (full) PLAYER_TOOLTIPS.put(uuid, tooltips);
+    }
+
+    @Nonnull
+    private static Map<Integer, SlotTooltip> precomputeContainer(@Nullable ItemContainer container,
+                                                                 @Nullable String lang) {
+        if (container == null) return Collections.emptyMap();
+
+        Map<Integer, SlotTooltip> tooltips = null;
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            ItemStack stack = container.getItemStack(slot);
+            if (ItemStack.isEmpty(stack)) continue;
+
+            String itemId = stack.getItemId();
+            if (BackpackArmorListener.getBackpackSize(itemId) == 0) continue;
+
+            StackTooltipKey key = new StackTooltipKey(
+                    itemId,
+                    BackpackItemFactory.isEquipped(stack),
+                    BackpackItemFactory.getSummary(stack),
+                    lang,
+                    RegistryGeneration.current());
+            CachedTooltip cached = STACK_TOOLTIP_CACHE.computeIfAbsent(key,
+                    _ -> toCachedTooltip(itemId, BackpackTooltipProvider.buildTooltip(stack, lang)));
+            if (cached.base() == null) continue;
+
+            if (tooltips == null) tooltips = new HashMap<>();
+            tooltips.put((int) slot, new SlotTooltip(itemId, stack.toPacket().metadata, cached, null));
+        }
+        return tooltips != null ? Map.copyOf(tooltips) : Collections.emptyMap();
+    }
+
+    @Nonnull
+    private static Map<Integer, SlotTooltip> precomputeArmor(@Nullable ItemContainer armor,
+                                                             @Nonnull String playerUuid,
+                                                             @Nullable String lang) {
+        if (armor == null || armor.getCapacity() <= CHEST_SLOT) return Collections.emptyMap();
+
+        ItemStack chest = armor.getItemStack((short) CHEST_SLOT);
+        if (ItemStack.isEmpty(chest)) return Collections.emptyMap();
+
+        String itemId = chest.getItemId();
+        short size = BackpackArmorListener.getBackpackSize(itemId);
+        if (size == 0) return Collections.emptyMap();
+
+        List<ItemStack> contents = BackpackDataStorage.getLiveContents(playerUuid);
+        CachedTooltip cached = toCachedTooltip(itemId, buildLiveTooltip(contents, size, lang));
+        if (cached.base() == null) return Collections.emptyMap();
+
+        return Map.of(CHEST_SLOT, new SlotTooltip(itemId, chest.toPacket().metadata, cached, contents));
     }
 
     private static boolean onInbound(@Nonnull PlayerRef playerRef,
                                      @Nonnull com.hypixel.hytale.protocol.Packet packet) {
 
+        if (!SENT_VIRTUAL_IDS.containsKey(playerRef.getUuid())) return false;
+
         try {
             if (packet instanceof MouseInteraction mouse) {
                 if (isVirtualId(mouse.itemInHandId)) {
@@ -128,68 +414,120 @@ public class BackpackTooltipListener {
         UUID uuid = playerRef.getUuid();
         String lang = playerRef.getLanguage();
 
-        Map<String, ItemBase> newVirtual = new HashMap<>();
-        Map<String, String> translations = new HashMap<>();
+        PlayerTooltips precomputed = PLAYER_TOOLTIPS.get(uuid);
+        if (precomputed != null && !precomputed.matches(lang)) precomputed = null;
 
-        processSection(packet.hotbar, lang, newVirtual, translations);
-        processSection(packet.utility, lang, newVirtual, translations);
-        processSection(packet.tools, lang, newVirtual, translations);
-        processSection(packet.storage, lang, newVirtual, translations);
-        processSection(packet.backpack, lang, newVirtual, translations);
+        if (precomputed != null && precomputed.isEmpty()) {
+            FAST_REJECTS.increment();
+            return;
+        }
+
+        Map<String, CachedTooltip> applied = new HashMap<>();
 
-        processArmor(packet.armor, uuid, lang, newVirtual, translations);
+        processSection(packet.hotbar, precomputed, HOTBAR, lang, applied);
+        processSection(packet.utility, precomputed, UTILITY, lang, applied);
+        processSection(packet.tools, precomputed, TOOLS, lang, applied);
+        processSection(packet.storage, precomputed, STORAGE, lang, applied);
+        processSection(packet.backpack, precomputed, BACKPACK, lang, applied);
 
-        if (newVirtual.isEmpty() && translations.isEmpty()) return;
+        processArmor(packet.armor, precomputed, uuid, lang, applied);
 
-        sendAux(playerRef, newVirtual, translations);
+        if (applied.isEmpty()) return;
+
+        sendAux(playerRef, applied);
     }
 
     private static void processSection(@Nullable InventorySection section,
+                                       @Nullable PlayerTooltips precomputed,
+                                       int sectionIndex,
                                        String lang,
-                                       Map<String, ItemBase> newVirtual,
-                                       Map<String, String> translations) {
+                                       Map<String, CachedTooltip> applied) {
 
         if (section == null || section.items == null) return;
 
+        Map<Integer, SlotTooltip> slotTooltips = precomputed != null ? precomputed.get(sectionIndex) : null;
+
         for (Map.Entry<Integer, ItemWithAllMetadata> e : section.items.entrySet()) {
 
             ItemWithAllMetadata item = e.getValue();
             if (item == null || item.itemId.isBlank()) continue;
             if (isVirtualId(item.itemId)) continue;
 
-            if (BackpackArmorListener.getBackpackSize(item.itemId) == 0) continue;
+            SlotTooltip slotTooltip = slotTooltips != null ? slotTooltips.get(e.getKey()) : null;
+
+            CachedTooltip cached;
+            if (slotTooltip != null && slotTooltip.matches(item)) {
+                cached = slotTooltip.tooltip();
+                PRECOMPUTED_APPLIED.increment();
+            } else {
+                if (BackpackArmorListener.getBackpackSize(item.itemId) == 0) continue;
+
+                TooltipKey key = new TooltipKey(
+                        item.itemId,
+                        item.metadata != null ? item.metadata : "",
+                        lang,
+                        RegistryGeneration.current());
+                cached = TOOLTIP_CACHE.computeIfAbsent(key, _ -> computeTooltip(item, lang));
+                FILTER_COMPUTED.increment();
+            }
+            if (cached.base() == null) continue;
 
-            ItemStack stack = buildFakeStack(item);
-            if (stack == null) continue;
+            applied.put(cached.virtualId(), cached);
 
-            String tooltip = BackpackTooltipProvider.buildTooltip(stack, lang);
-            if (tooltip == null) continue;
+            ItemWithAllMetadata clone = item.clone();
+            clone.itemId = cached.virtualId();
+            e.setValue(clone);
+        }
+    }
 
-            String hash = fastHash(tooltip);
-            String virtualId = item.itemId + VIRTUAL_SEP + hash;
-            String descKey = DESC_KEY_PREFIX + virtualId + ".description";
+    @Nonnull
+    private static CachedTooltip computeTooltip(@Nonnull ItemWithAllMetadata item, String lang) {
+        ItemStack stack = buildFakeStack(item);
+        if (stack == null) return CachedTooltip.NONE;
 
-            ItemBase base = buildVirtual(item.itemId, virtualId, descKey);
-            if (base == null) continue;
+        return toCachedTooltip(item.itemId, BackpackTooltipProvider.buildTooltip(stack, lang));
+    }
 
-            newVirtual.put(virtualId, base);
-            translations.put(descKey, tooltip);
+    @Nonnull
+    private static CachedTooltip toCachedTooltip(@Nonnull String itemId, @Nullable String tooltip) {
+        if (tooltip == null) return CachedTooltip.NONE;
 
-            ItemWithAllMetadata clone = item.clone();
-            clone.itemId = virtualId;
-            e.setValue(clone);
-        }
+        String hash = fastHash(tooltip);
+        String virtualId = itemId + VIRTUAL_SEP + hash;
+        String descKey = DESC_KEY_PREFIX + virtualId + ".description";
+
+        ItemBase base = buildVirtual(itemId, virtualId, descKey);
+        if (base == null) return CachedTooltip.NONE;
+
+        return new CachedTooltip(tooltip, virtualId, descKey, base);
+    }
+
+    @Nonnull
+    private static String buildLiveTooltip(@Nullable List<ItemStack> contents, short size, @Nullable String lang) {
+        return contents != null
+                ? BackpackTooltipProvider.buildTooltipFromLiveContents(contents, size, lang)
+                : BackpackTooltipProvider.buildEmptyTooltip(size, lang);
+    }
+
+    @Nonnull
+    public static String describeCache() {
+        return "tooltips[" + TOOLTIP_CACHE.describe() + "] stackTooltips[" + STACK_TOOLTIP_CACHE.describe()
+                + "] virtualItems[" + VIRTUAL_ITEMS.describe() + "] translationPayloads["
+                + TRANSLATION_PAYLOADS.describe() + "]"
+                + String.format(" precomputed=%d filterComputed=%d fastRejects=%d players=%d sharedPayloads=%d",
+                PRECOMPUTED_APPLIED.sum(), FILTER_COMPUTED.sum(), FAST_REJECTS.sum(), PLAYER_TOOLTIPS.size(),
+                SHARED_PAYLOADS.sum());
     }
 
     private static void processArmor(@Nullable InventorySection armor,
+                                     @Nullable PlayerTooltips precomputed,
                                      UUID uuid,
                                      String lang,
-                                     Map<String, ItemBase> newVirtual,
-                                     Map<String, String> translations) {
+                                     Map<String, CachedTooltip> applied) {
 
         if (armor == null || armor.items == null) return;
 
-        ItemWithAllMetadata chest = armor.items.get(1);
+        ItemWithAllMetadata chest = armor.items.get(CHEST_SLOT);
         if (chest == null || chest.itemId.isBlank()) return;
         if (isVirtualId(chest.itemId)) return;
 
@@ -198,35 +536,43 @@ public class BackpackTooltipListener {
 
         List<ItemStack> contents = BackpackDataStorage.getLiveContents(uuid.toString());
 
-        String tooltip = contents != null
-                ? BackpackTooltipProvider.buildTooltipFromLiveContents(contents, size, lang)
-                : BackpackTooltipProvider.buildEmptyTooltip(size, lang);
-
-        String hash = fastHash(tooltip);
-        String virtualId = chest.itemId + VIRTUAL_SEP + hash;
-        String descKey = DESC_KEY_PREFIX + virtualId + ".description";
+        Map<Integer, SlotTooltip> slotTooltips = precomputed != null ? precomputed.get(ARMOR) : null;
+        SlotTooltip slotTooltip = slotTooltips != null ? slotTooltips.get(CHEST_SLOT) : null;
 
-        ItemBase base = buildVirtual(chest.itemId, virtualId, descKey);
-        if (base == null) return;
+        CachedTooltip cached;
+        if (slotTooltip != null && slotTooltip.matches(chest) && slotTooltip.liveContents() == contents) {
+            cached = slotTooltip.tooltip();
+            PRECOMPUTED_APPLIED.increment();
+        } else {
+            cached = toCachedTooltip(chest.itemId, buildLiveTooltip(contents, size, lang));
+            FILTER_COMPUTED.increment();
+        }
+        if (cached.base() == null) return;
 
-        newVirtual.put(virtualId, base);
-        translations.put(descKey, tooltip);
+        applied.put(cached.virtualId(), cached);
 
         ItemWithAllMetadata clone = chest.clone();
-        clone.itemId = virtualId;
-        armor.items.put(1, clone);
+        clone.itemId = cached.virtualId();
+        armor.items.put(CHEST_SLOT, clone);
     }
 
-    private static void sendAux(PlayerRef ref,
-                                Map<String, ItemBase> items,
-                                Map<String, String> translations) {
+    private static void sendAux(PlayerRef ref, Map<String, CachedTooltip> applied) {
 
         UUID uuid = ref.getUuid();
 
-        Set<String> sent = SENT_VIRTUAL_IDS.computeIfAbsent(uuid, _ -> ConcurrentHashMap.newKeySet());
-        Map<String, String> last = LAST_SENT_TRANSLATIONS.computeIfAbsent(uuid, _ -> new ConcurrentHashMap<>());
+        SentVirtualIds sent = SENT_VIRTUAL_IDS.computeIfAbsent(uuid, _ -> new SentVirtualIds());
 
-        items.entrySet().removeIf(e -> !sent.add(e.getKey()));
+        Set<String> inUse = new HashSet<>(applied.keySet());
+        PlayerTooltips precomputed = PLAYER_TOOLTIPS.get(uuid);
+        if (precomputed != null) precomputed.collectVirtualIds(inUse);
+
+        Map<String, ItemBase> items = new HashMap<>();
+        Map<String, String> translations = new HashMap<>();
+        for (CachedTooltip cached : applied.values()) {
+            if (!sent.add(cached.virtualId())) continue;
+            items.put(cached.virtualId(), cached.base());
+            translations.put(cached.descKey(), cached.tooltip());
+        }
 
         if (!items.isEmpty()) {
             UpdateItems pkt = new UpdateItems();
@@ -236,37 +582,61 @@ public class BackpackTooltipListener {
             ref.getPacketHandler().writeNoCache(pkt);
         }
 
-        Map<String, String> delta = new HashMap<>();
-        for (Map.Entry<String, String> e : translations.entrySet()) {
-            if (!e.getValue().equals(last.get(e.getKey()))) {
-                delta.put(e.getKey(), e.getValue());
-            }
+        if (!translations.isEmpty()) {
+            ref.getPacketHandler().writeNoCache(translationPayload(translations));
         }
 
-        if (!delta.isEmpty()) {
-            ref.getPacketHandler().writeNoCache(new UpdateTranslations(UpdateType.AddOrUpdate, delta));
-            last.putAll(delta);
-        }
+        List<String> evicted = sent.evictOverflow(inUse);
+        if (!evicted.isEmpty()) sendRemoval(ref, evicted);
+    }
 
-        if (sent.size() > 500) {
-            sent.clear();
+    private static void sendRemoval(@Nonnull PlayerRef ref, @Nonnull List<String> virtualIds) {
+        UpdateItems removal = new UpdateItems();
+        removal.type = UpdateType.Remove;
+        removal.items = new HashMap<>();
+        removal.removedItems = virtualIds.toArray(new String[0]);
+        ref.getPacketHandler().writeNoCache(removal);
+    }
+
+    @Nonnull
+    private static UpdateTranslations translationPayload(@Nonnull Map<String, String> translations) {
+        UpdateTranslations shared = TRANSLATION_PAYLOADS.get(translations);
+        if (shared != null) {
+            SHARED_PAYLOADS.increment();
+            return shared;
         }
+
+        Map<String, String> key = Map.copyOf(translations);
+        UpdateTranslations payload = new UpdateTranslations(UpdateType.AddOrUpdate, new HashMap<>(key));
+        TRANSLATION_PAYLOADS.put(key, payload);
+        return payload;
     }
 
     private static boolean isVirtualId(String id) {
-        return id != null && id.contains(VIRTUAL_SEP);
+        return id != null
+                && id.length() > VIRTUAL_SUFFIX_LENGTH
+                && id.startsWith(VIRTUAL_SEP, id.length() - VIRTUAL_SUFFIX_LENGTH);
     }
 
     private static String getBaseItemId(String id) {
-        int i = id.indexOf(VIRTUAL_SEP);
-        return i > 0 ? id.substring(0, i) : id;
+        return id.substring(0, id.length() - VIRTUAL_SUFFIX_LENGTH);
     }
 
     private static String fastHash(String s) {
-        return Integer.toHexString(s.hashCode());
+        String hex = Integer.toHexString(s.hashCode());
+        return HASH_PADDING.substring(hex.length()) + hex;
     }
 
     private static ItemBase buildVirtual(String baseId, String virtualId, String descKey) {
+        ItemBase cached = VIRTUAL_ITEMS.get(virtualId);
+        if (cached != null) return cached;
+
+        ItemBase base = createVirtual(baseId, virtualId, descKey);
+        if (base != null) VIRTUAL_ITEMS.put(virtualId, base);
+        return base;
+    }
+
+    private static ItemBase createVirtual(String baseId, String virtualId, String descKey) {
         try {
             Item item = Item.getAssetMap().getAsset(baseId);
             if (item == null) return null;
@@ -298,4 +668,29 @@ public class BackpackTooltipListener {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    public static class PrecomputeSystem extends EntityEventSystem<EntityStore, InventoryChangeEvent> {
+
+        public PrecomputeSystem() {
+            super(InventoryChangeEvent.class);
+        }
+
+        @Override
+        public void handle(int index,
+                           @Nonnull ArchetypeChunk<EntityStore> archetypeChunk,
+                           @Nonnull Store<EntityStore> store,
+                           @Nonnull CommandBuffer<EntityStore> commandBuffer,
+                           @Nonnull InventoryChangeEvent event) {
+            PlayerRef playerRef = archetypeChunk.getComponent(index, PlayerRef.getComponentType());
+            if (playerRef == null) return;
+
+            precompute(playerRef, archetypeChunk, index, event);
+        }
+
+        @Nullable
+        @Override
+        public Query<EntityStore> getQuery() {
+            return Player.getComponentType();
+        }
+    }
+}
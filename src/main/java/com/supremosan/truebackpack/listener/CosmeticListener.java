@@ -1,5 +1,6 @@
 package com.supremosan.truebackpack.listener;
 
+import com.hypixel.hytale.assetstore.event.LoadedAssetsEvent;
 import com.hypixel.hytale.component.CommandBuffer;
 import com.hypixel.hytale.component.Component;
 import com.hypixel.hytale.component.ComponentType;
@@ -8,6 +9,7 @@ import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.component.query.Query;
 import com.hypixel.hytale.component.system.RefChangeSystem;
 import com.hypixel.hytale.component.system.EntityEventSystem;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
 import com.hypixel.hytale.component.ArchetypeChunk;
 import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.protocol.Cosmetic;
@@ -29,12 +31,15 @@ import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.modules.entity.component.ModelComponent;
 import com.hypixel.hytale.server.core.modules.entity.player.PlayerSettings;
 import com.hypixel.hytale.server.core.modules.entity.player.PlayerSkinComponent;
+import com.hypixel.hytale.server.core.modules.entity.tracker.EntityTrackerSystems;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
 import com.supremosan.truebackpack.cosmetic.CosmeticUtils;
+import com.supremosan.truebackpack.util.BoundedCache;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -43,12 +48,15 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 public final class CosmeticListener {
 
@@ -67,17 +75,81 @@ public final class CosmeticListener {
     private static final Map<String, ModelAsset.AnimationSet> EXTRA_ANIMATION_ENTRIES =
             new ConcurrentHashMap<>();
 
+    private record PendingRebuild(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, boolean force) {
+    }
+
+    private static final class RebuildQueue {
+        private final Map<String, PendingRebuild> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    }
+
+    private static final String INNER_HAIR_PREFIX = "Items/Hats/InnerHair_";
+
+    private record SkinModelIndex(@Nonnull CosmeticRegistry registry, @Nonnull Set<String> models) {
+        boolean matches(@Nullable String model) {
+            return model != null && (models.contains(model) || model.startsWith(INNER_HAIR_PREFIX));
+        }
+    }
+
+    private static volatile SkinModelIndex SKIN_MODEL_INDEX;
+
+    private static final int MODEL_CACHE_SIZE = 512;
+    private static final int ANIMATION_SET_CACHE_SIZE = 64;
+
+    private static final BoundedCache<List<Object>, Model> MODEL_CACHE = new BoundedCache<>(MODEL_CACHE_SIZE);
+    private static final BoundedCache<String, Map<String, ModelAsset.AnimationSet>> ANIMATION_SET_CACHE =
+            new BoundedCache<>(ANIMATION_SET_CACHE_SIZE);
+
+    private static final Map<World, RebuildQueue> REBUILD_QUEUES = new ConcurrentHashMap<>();
+
+    private static final LongAdder REBUILDS_REQUESTED = new LongAdder();
+    private static final LongAdder REBUILDS_EXECUTED = new LongAdder();
+    private static final LongAdder REBUILDS_APPLIED = new LongAdder();
+    private static final LongAdder REBUILDS_SKIPPED = new LongAdder();
+    private static final LongAdder REBUILDS_DEFERRED = new LongAdder();
+
+    private record DeferredRebuild(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, long deferredAt) {
+    }
+
+    private static final Map<String, DeferredRebuild> DEFERRED_REBUILDS = new ConcurrentHashMap<>();
+
+    private record AppliedModel(@Nonnull Model model, @Nonnull List<Object> fingerprint) {
+    }
+
+    private static final Map<String, AppliedModel> APPLIED_MODELS = new ConcurrentHashMap<>();
+
+    private record ResolvedSkin(@Nonnull CosmeticRegistry registry,
+                                @Nonnull PlayerSkin skin,
+                                @Nonnull Set<Cosmetic> hiddenCosmetics,
+                                @Nonnull String bodyGradientId,
+                                @Nonnull List<ModelAttachment> attachments) {
+        boolean matches(@Nonnull CosmeticRegistry registry,
+                        @Nonnull PlayerSkin skin,
+                        @Nonnull Set<Cosmetic> hiddenCosmetics,
+                        @Nonnull String bodyGradientId) {
+            return this.registry == registry
+                    && this.skin == skin
+                    && this.bodyGradientId.equals(bodyGradientId)
+                    && this.hiddenCosmetics.equals(hiddenCosmetics);
+        }
+    }
+
+    private static final Map<String, ResolvedSkin> RESOLVED_SKINS = new ConcurrentHashMap<>();
+
     private CosmeticListener() {
     }
 
     public static void register(@Nonnull TrueBackpack plugin) {
         plugin.getEventRegistry()
                 .registerGlobal(PlayerReadyEvent.class, CosmeticListener::onPlayerReady);
+        plugin.getEventRegistry()
+                .registerGlobal(LoadedAssetsEvent.class, CosmeticListener::onAssetsLoaded);
 
         plugin.getEntityStoreRegistry().registerSystem(new OnPlayerSettingsChange());
         plugin.getEntityStoreRegistry().registerSystem(new OnPlayerSkinChange());
         plugin.getEntityStoreRegistry().registerSystem(new OnModelChange());
         plugin.getEntityStoreRegistry().registerSystem(new OnArmorChange());
+        plugin.getEntityStoreRegistry().registerSystem(new DeferredRebuildSystem());
 
         LOGGER.atInfo().log("[TrueBackpack] CosmeticListener registered");
     }
@@ -122,12 +194,17 @@ public final class CosmeticListener {
     public static void onPlayerLeave(@Nonnull String playerUuid) {
         PLAYER_ATTACHMENTS.remove(playerUuid);
         PREVIOUS_INJECTED.remove(playerUuid);
+        APPLIED_MODELS.remove(playerUuid);
+        RESOLVED_SKINS.remove(playerUuid);
+        DEFERRED_REBUILDS.remove(playerUuid);
         REBUILT_THIS_TICK.remove(playerUuid);
     }
 
     public static void registerExtraAnimations(@Nonnull String animationId,
                                                @Nonnull ModelAsset.AnimationSet animationSet) {
         EXTRA_ANIMATION_ENTRIES.put(animationId, animationSet);
+        ANIMATION_SET_CACHE.clear();
+        MODEL_CACHE.clear();
     }
 
     public static boolean isProcessing() {
@@ -143,14 +220,87 @@ public final class CosmeticListener {
                                        @Nonnull Ref<EntityStore> ref,
                                        @Nonnull String playerUuid) {
         World world = player.getWorld();
-        Runnable task = () -> runProtectedRebuild(store, ref, playerUuid);
 
         if (world == null) {
-            task.run();
+            REBUILDS_REQUESTED.increment();
+            runProtectedRebuild(store, ref, playerUuid);
             return;
         }
 
-        world.execute(task);
+        enqueueRebuild(world, store, ref, playerUuid, false);
+    }
+
+    @Nonnull
+    public static String describeRebuildStats() {
+        long requested = REBUILDS_REQUESTED.sum();
+        long executed = REBUILDS_EXECUTED.sum();
+        return String.format("requested=%d executed=%d coalescing=%.2fx applied=%d skipped=%d",
+                requested, executed, executed == 0 ? 0.0 : (double) requested / executed,
+                REBUILDS_APPLIED.sum(), REBUILDS_SKIPPED.sum())
+                + String.format(" deferred=%d waiting=%d", REBUILDS_DEFERRED.sum(), DEFERRED_REBUILDS.size());
+    }
+
+    private static void enqueueRebuild(@Nonnull World world,
+                                       @Nonnull Store<EntityStore> store,
+                                       @Nonnull Ref<EntityStore> ref,
+                                       @Nonnull String playerUuid,
+                                       boolean force) {
+        REBUILDS_REQUESTED.increment();
+
+        RebuildQueue queue = REBUILD_QUEUES.computeIfAbsent(world, ignored -> new RebuildQueue());
+        queue.pending.merge(playerUuid, new PendingRebuild(store, ref, force),
+                (previous, next) -> previous.force() && !next.force() ? previous : next);
+
+        if (queue.drainScheduled.compareAndSet(false, true)) {
+            world.execute(() -> drainRebuilds(world, queue));
+        }
+    }
+
+    private static void drainRebuilds(@Nonnull World world, @Nonnull RebuildQueue queue) {
+        queue.drainScheduled.set(false);
+
+        Iterator<Map.Entry<String, PendingRebuild>> it = queue.pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, PendingRebuild> entry = it.next();
+            it.remove();
+            PendingRebuild rebuild = entry.getValue();
+            if (!rebuild.force() && deferIfUnobserved(rebuild.store(), rebuild.ref(), entry.getKey())) {
+                continue;
+            }
+            DEFERRED_REBUILDS.remove(entry.getKey());
+            runProtectedRebuild(rebuild.store(), rebuild.ref(), entry.getKey());
+        }
+
+        if (queue.pending.isEmpty()) {
+            REBUILD_QUEUES.remove(world, queue);
+        }
+    }
+
+    private static boolean deferIfUnobserved(@Nonnull Store<EntityStore> store,
+                                             @Nonnull Ref<EntityStore> ref,
+                                             @Nonnull String playerUuid) {
+        if (!BackpackConfigService.settings().deferUnobservedRebuilds) {
+            return false;
+        }
+
+        if (!ref.isValid() || isObserved(store, ref)) {
+            return false;
+        }
+
+        if (DEFERRED_REBUILDS.putIfAbsent(playerUuid, new DeferredRebuild(store, ref, System.nanoTime())) == null) {
+            REBUILDS_DEFERRED.increment();
+        }
+        return true;
+    }
+
+    private static boolean isObserved(@Nonnull Store<EntityStore> store,
+                                      @Nonnull Ref<EntityStore> ref) {
+        if (store.getComponent(ref, PlayerRef.getComponentType()) != null) {
+            return true;
+        }
+
+        EntityTrackerSystems.Visible visible = store.getComponent(ref, EntityTrackerSystems.Visible.getComponentType());
+        return visible == null || !visible.visibleTo.isEmpty();
     }
 
     public static void scheduleRebuildForUuid(@Nonnull String playerUuid) {
@@ -179,18 +329,7 @@ public final class CosmeticListener {
             return;
         }
 
-        Store<EntityStore> store = ref.getStore();
-
-        world.execute(() -> {
-            if (!ref.isValid()) {
-                return;
-            }
-
-            Player player = store.getComponent(ref, Player.getComponentType());
-            if (player != null) {
-                scheduleRebuild(player, store, ref, playerUuid);
-            }
-        });
+        enqueueRebuild(world, ref.getStore(), ref, playerUuid, false);
     }
 
     private static void onPlayerReady(@Nonnull PlayerReadyEvent event) {
@@ -218,6 +357,11 @@ public final class CosmeticListener {
         public ComponentType<EntityStore, PlayerSettings> componentType() {
             return PlayerSettings.getComponentType();
         }
+
+        @Override
+        protected boolean invalidatesSkin() {
+            return true;
+        }
     }
 
     public static final class OnPlayerSkinChange extends RebuildOnChangeSystem<PlayerSkinComponent> {
@@ -227,6 +371,11 @@ public final class CosmeticListener {
         public ComponentType<EntityStore, PlayerSkinComponent> componentType() {
             return PlayerSkinComponent.getComponentType();
         }
+
+        @Override
+        protected boolean invalidatesSkin() {
+            return true;
+        }
     }
 
     public static final class OnModelChange extends RebuildOnChangeSystem<ModelComponent> {
@@ -278,6 +427,41 @@ public final class CosmeticListener {
         }
     }
 
+    public static final class DeferredRebuildSystem extends TickingSystem<EntityStore> {
+
+        @Override
+        public void tick(float dt, int systemIndex, @Nonnull Store<EntityStore> store) {
+            if (DEFERRED_REBUILDS.isEmpty()) {
+                return;
+            }
+
+            long maxDeferNanos = (long) (BackpackConfigService.settings().maxRebuildDeferSeconds * 1_000_000_000L);
+            boolean deferUnobserved = BackpackConfigService.settings().deferUnobservedRebuilds;
+            long now = System.nanoTime();
+
+            Iterator<Map.Entry<String, DeferredRebuild>> it = DEFERRED_REBUILDS.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, DeferredRebuild> entry = it.next();
+                DeferredRebuild deferred = entry.getValue();
+                if (!deferred.ref().isValid()) {
+                    it.remove();
+                    continue;
+                }
+                if (deferred.store() != store) {
+                    continue;
+                }
+
+                boolean expired = now - deferred.deferredAt() >= maxDeferNanos;
+                if (!expired && deferUnobserved && !isObserved(store, deferred.ref())) {
+                    continue;
+                }
+
+                it.remove();
+                enqueueRebuild(store.getExternalData().getWorld(), store, deferred.ref(), entry.getKey(), true);
+            }
+        }
+    }
+
     private abstract static class RebuildOnChangeSystem<T extends Component<EntityStore>>
             extends RefChangeSystem<EntityStore, T> {
 
@@ -310,9 +494,13 @@ public final class CosmeticListener {
                                        @Nonnull CommandBuffer<EntityStore> commandBuffer) {
         }
 
-        private static void handleChange(@Nonnull Ref<EntityStore> ref,
-                                         @Nonnull Store<EntityStore> store,
-                                         @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        protected boolean invalidatesSkin() {
+            return false;
+        }
+
+        private void handleChange(@Nonnull Ref<EntityStore> ref,
+                                  @Nonnull Store<EntityStore> store,
+                                  @Nonnull CommandBuffer<EntityStore> commandBuffer) {
             if (isProcessing()) {
                 return;
             }
@@ -324,6 +512,9 @@ public final class CosmeticListener {
 
             String playerUuid = resolveUuid(store, ref);
             if (playerUuid != null) {
+                if (invalidatesSkin()) {
+                    RESOLVED_SKINS.remove(playerUuid);
+                }
                 scheduleRebuild(player, store, ref, playerUuid);
             }
         }
@@ -339,24 +530,26 @@ public final class CosmeticListener {
         PROCESSING.set(true);
 
         try {
-            rebuildModel(store, ref, playerUuid);
-            REBUILT_THIS_TICK.add(playerUuid);
+            REBUILDS_EXECUTED.increment();
+            if (rebuildModel(store, ref, playerUuid)) {
+                REBUILT_THIS_TICK.add(playerUuid);
+            }
         } finally {
             PROCESSING.set(false);
         }
     }
 
-    private static void rebuildModel(@Nonnull Store<EntityStore> store,
-                                     @Nonnull Ref<EntityStore> ref,
-                                     @Nonnull String playerUuid) {
+    private static boolean rebuildModel(@Nonnull Store<EntityStore> store,
+                                        @Nonnull Ref<EntityStore> ref,
+                                        @Nonnull String playerUuid) {
         ModelComponent modelComponent = store.getComponent(ref, ModelComponent.getComponentType());
         if (modelComponent == null) {
-            return;
+            return false;
         }
 
         PlayerSkinComponent skinComponent = store.getComponent(ref, PlayerSkinComponent.getComponentType());
         if (skinComponent == null) {
-            return;
+            return false;
         }
 
         Model current = modelComponent.getModel();
@@ -379,8 +572,23 @@ public final class CosmeticListener {
             PREVIOUS_INJECTED.put(playerUuid, injected);
         }
 
-        Model rebuilt = copyModelWithAttachments(current, attachments, body);
+        List<Object> fingerprint = modelFingerprint(current, attachments, body);
+        AppliedModel applied = APPLIED_MODELS.get(playerUuid);
+        if (applied != null && applied.model() == current && applied.fingerprint().equals(fingerprint)) {
+            REBUILDS_SKIPPED.increment();
+            return false;
+        }
+
+        Model rebuilt = copyModelWithAttachments(current, attachments, body, fingerprint);
+        APPLIED_MODELS.put(playerUuid, new AppliedModel(rebuilt, fingerprint));
+        if (rebuilt == current) {
+            REBUILDS_SKIPPED.increment();
+            return false;
+        }
+
         store.replaceComponent(ref, ModelComponent.getComponentType(), new ModelComponent(rebuilt));
+        REBUILDS_APPLIED.increment();
+        return true;
     }
 
     @Nonnull
@@ -393,11 +601,10 @@ public final class CosmeticListener {
         PlayerSettings settings = store.getComponent(ref, PlayerSettings.getComponentType());
         CosmeticRegistry registry = CosmeticsModule.get().getRegistry();
         Set<Cosmetic> hiddenCosmetics = resolveHiddenCosmetics(store, ref, settings);
-        List<ModelAttachment> restored = new ArrayList<>();
         List<ModelAttachment> injected = new ArrayList<>();
 
         removeRegisteredSkinAttachments(currentAttachments, registry);
-        restoreSkinAttachments(restored, skin, hiddenCosmetics, bodyGradientId);
+        List<ModelAttachment> restored = resolveSkinAttachments(playerUuid, registry, skin, hiddenCosmetics, bodyGradientId);
 
         for (ModelAttachment attachment : restored) {
             upsertAttachmentByModel(currentAttachments, attachment);
@@ -413,33 +620,56 @@ public final class CosmeticListener {
 
     private static void removeRegisteredSkinAttachments(@Nonnull List<ModelAttachment> attachments,
                                                         @Nonnull CosmeticRegistry registry) {
+        SkinModelIndex index = skinModelIndex(registry);
+        attachments.removeIf(attachment -> index.matches(attachment.getModel()));
+    }
+
+    @Nonnull
+    private static SkinModelIndex skinModelIndex(@Nonnull CosmeticRegistry registry) {
+        SkinModelIndex index = SKIN_MODEL_INDEX;
+        if (index != null && index.registry() == registry) {
+            return index;
+        }
+
         Set<String> models = new HashSet<>();
+        for (Map<String, PlayerSkinPart> part : skinPartRegistries(registry)) {
+            collectModels(models, part);
+        }
 
-        collectModels(models, registry.getSkinFeatures());
-        collectModels(models, registry.getFaces());
-        collectModels(models, registry.getMouths());
-        collectModels(models, registry.getEars());
-        collectModels(models, registry.getEyebrows());
-        collectModels(models, registry.getEyes());
-        collectModels(models, registry.getUnderwear());
-        collectModels(models, registry.getHaircuts());
-        collectModels(models, registry.getFacialHairs());
-        collectModels(models, registry.getCapes());
-        collectModels(models, registry.getFaceAccessories());
-        collectModels(models, registry.getGloves());
-        collectModels(models, registry.getHeadAccessories());
-        collectModels(models, registry.getOverpants());
-        collectModels(models, registry.getOvertops());
-        collectModels(models, registry.getPants());
-        collectModels(models, registry.getShoes());
-        collectModels(models, registry.getUndertops());
-        collectModels(models, registry.getEarAccessories());
-
-        attachments.removeIf(attachment -> {
-            String model = attachment.getModel();
-            return model != null
-                    && (models.contains(model) || model.startsWith("Items/Hats/InnerHair_"));
-        });
+        index = new SkinModelIndex(registry, Set.copyOf(models));
+        SKIN_MODEL_INDEX = index;
+        return index;
+    }
+
+    private static void onAssetsLoaded(@Nonnull LoadedAssetsEvent<?, ?, ?> event) {
+        SKIN_MODEL_INDEX = null;
+        ANIMATION_SET_CACHE.clear();
+        MODEL_CACHE.clear();
+    }
+
+    @Nonnull
+    private static List<Map<String, PlayerSkinPart>> skinPartRegistries(@Nonnull CosmeticRegistry registry) {
+        return List.of(
+                registry.getSkinFeatures(),
+                registry.getFaces(),
+                registry.getMouths(),
+                registry.getEars(),
+                registry.getEyebrows(),
+                registry.getEyes(),
+                registry.getUnderwear(),
+                registry.getHaircuts(),
+                registry.getFacialHairs(),
+                registry.getCapes(),
+                registry.getFaceAccessories(),
+                registry.getGloves(),
+                registry.getHeadAccessories(),
+                registry.getOverpants(),
+                registry.getOvertops(),
+                registry.getPants(),
+                registry.getShoes(),
+                registry.getUndertops(),
+                registry.getEarAccessories()
+        );
     }
 
     private static void collectModels(@Nonnull Set<String> models,
@@ -461,20 +691,85 @@ public final class CosmeticListener {
         }
     }
 
+    @Nonnull
+    private static List<Object> modelFingerprint(@Nonnull Model current,
+                                                 @Nonnull List<ModelAttachment> attachments,
+                                                 @Nonnull BodySkinData body) {
+        return Arrays.asList(
+                current.getModelAssetId(),
+                current.getScale(),
+                current.getRandomAttachmentIds(),
+                body.texture() != null ? body.texture() : current.getTexture(),
+                body.gradientSet() != null ? body.gradientSet() : current.getGradientSet(),
+                !body.gradientId().isEmpty() ? body.gradientId() : current.getGradientId(),
+                List.copyOf(attachments)
+        );
+    }
+
     @Nonnull
     private static Model copyModelWithAttachments(@Nonnull Model current,
                                                   @Nonnull List<ModelAttachment> attachments,
-                                                  @Nonnull BodySkinData body) {
+                                                  @Nonnull BodySkinData body,
+                                                  @Nonnull List<Object> fingerprint) {
         String gradientSet = body.gradientSet() != null ? body.gradientSet() : current.getGradientSet();
         String gradientId = !body.gradientId().isEmpty() ? body.gradientId() : current.getGradientId();
         String texture = body.texture() != null ? body.texture() : current.getTexture();
 
+        if (current.getModelAssetId() == null) {
+            return buildModel(current, attachments, texture, gradientSet, gradientId);
+        }
+
+        return MODEL_CACHE.computeIfAbsent(modelKey(current, fingerprint),
+                ignored -> buildModel(current, attachments, texture, gradientSet, gradientId));
+    }
+
+    @Nonnull
+    private static List<Object> modelKey(@Nonnull Model current, @Nonnull List<Object> fingerprint) {
+        return Arrays.asList(
+                fingerprint,
+                current.getBoundingBox(),
+                current.getModel(),
+                current.getEyeHeight(),
+                current.getCrouchOffset(),
+                current.getSittingOffset(),
+                current.getSleepingOffset(),
+                current.getAnimationSetMap(),
+                current.getCamera(),
+                current.getLight(),
+                current.getParticles(),
+                current.getTrails(),
+                current.getPhysicsValues(),
+                current.getDetailBoxes(),
+                current.getPhobia(),
+                current.getPhobiaModelAssetId()
+        );
+    }
+
+    @Nonnull
+    public static String describeModelCache() {
+        return "models[" + MODEL_CACHE.describe() + "] animationSets[" + ANIMATION_SET_CACHE.describe() + "]";
+    }
+
+    @Nonnull
+    private static Map<String, ModelAsset.AnimationSet> mergedAnimationSets(@Nonnull Model current) {
         Map<String, ModelAsset.AnimationSet> animationSetMap = current.getAnimationSetMap();
-        if (!EXTRA_ANIMATION_ENTRIES.isEmpty()) {
-            animationSetMap = new LinkedHashMap<>(animationSetMap);
-            animationSetMap.putAll(EXTRA_ANIMATION_ENTRIES);
+        if (EXTRA_ANIMATION_ENTRIES.isEmpty() || current.getModelAssetId() == null) {
+            return animationSetMap;
         }
 
+        return ANIMATION_SET_CACHE.computeIfAbsent(current.getModelAssetId(), ignored -> {
+            Map<String, ModelAsset.AnimationSet> merged = new LinkedHashMap<>(animationSetMap);
+            merged.putAll(EXTRA_ANIMATION_ENTRIES);
+            return Collections.unmodifiableMap(merged);
+        });
+    }
+
+    @Nonnull
+    private static Model buildModel(@Nonnull Model current,
+                                    @Nonnull List<ModelAttachment> attachments,
+                                    @Nullable String texture,
+                                    @Nullable String gradientSet,
+                                    @Nullable String gradientId) {
         return new Model(
                 current.getModelAssetId(),
                 current.getScale(),
@@ -489,7 +784,7 @@ public final class CosmeticListener {
                 current.getCrouchOffset(),
                 current.getSittingOffset(),
                 current.getSleepingOffset(),
-                animationSetMap,
+                mergedAnimationSets(current),
                 current.getCamera(),
                 current.getLight(),
                 current.getParticles(),
@@ -578,6 +873,25 @@ public final class CosmeticListener {
         };
     }
 
+    @Nonnull
+    private static List<ModelAttachment> resolveSkinAttachments(@Nonnull String playerUuid,
+                                                                @Nonnull CosmeticRegistry registry,
+                                                                @Nonnull PlayerSkin skin,
+                                                                @Nonnull Set<Cosmetic> hiddenCosmetics,
+                                                                @Nonnull String bodyGradientId) {
+        ResolvedSkin cached = RESOLVED_SKINS.get(playerUuid);
+        if (cached != null && cached.matches(registry, skin, hiddenCosmetics, bodyGradientId)) {
+            return cached.attachments();
+        }
+
+        List<ModelAttachment> restored = new ArrayList<>();
+        restoreSkinAttachments(restored, skin, hiddenCosmetics, bodyGradientId);
+
+        ResolvedSkin resolved = new ResolvedSkin(registry, skin, Set.copyOf(hiddenCosmetics), bodyGradientId, List.copyOf(restored));
+        RESOLVED_SKINS.put(playerUuid, resolved);
+        return resolved.attachments();
+    }
+
     private static void restoreSkinAttachments(@Nonnull List<ModelAttachment> attachments,
                                                @Nonnull PlayerSkin skin,
                                                @Nonnull Set<Cosmetic> hiddenCosmetics,
@@ -667,8 +981,8 @@ public final class CosmeticListener {
             String hairType = part.getHairType().name();
             String gradientId = textureId != null ? textureId : "Black";
             attachments.add(new ModelAttachment(
-                    "Items/Hats/InnerHair_" + hairType + ".blockymodel",
-                    "Items/Hats/InnerHair_" + hairType + "_Greyscale.png",
+                    INNER_HAIR_PREFIX + hairType + ".blockymodel",
+                    INNER_HAIR_PREFIX + hairType + "_Greyscale.png",
                     "Hair",
                     gradientId,
                     1.0
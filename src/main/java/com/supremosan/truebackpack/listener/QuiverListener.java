@@ -20,6 +20,7 @@ import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.supremosan.truebackpack.TrueBackpack;
 import com.supremosan.truebackpack.cosmetic.CosmeticPreferenceUtils;
+import com.supremosan.truebackpack.registries.ItemClassIndex;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -31,7 +32,6 @@ public class QuiverListener {
     private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
 
     private static final String ATTACHMENT_SLOT_KEY = "truebackpack:quiver";
-    private static final String ARROW_ID_FRAGMENT = "Weapon_Arrow";
 
     private static final ModelAttachment QUIVER_ATTACHMENT =
             new ModelAttachment("Items/Back/Quiver.blockymodel", "Items/Back/Quiver_Texture.png", null, null, 1.0);
@@ -111,7 +111,7 @@ public class QuiverListener {
             return;
         }
 
-        ModelAttachment correct = BackpackArmorListener.hasEquippedBackpack(playerUuid)
+        ModelAttachment correct = BackpackArmorListener.hasEquippedBackpack(store, ref)
                 ? QUIVER_BACKPACK_ATTACHMENT
                 : QUIVER_ATTACHMENT;
 
@@ -138,7 +138,7 @@ public class QuiverListener {
             for (short slot = 0; slot < container.getCapacity(); slot++) {
                 ItemStack stack = container.getItemStack(slot);
                 if (stack == null || stack.isEmpty()) continue;
-                if (stack.getItemId().contains(ARROW_ID_FRAGMENT)) return true;
+                if (ItemClassIndex.is(stack.getItemId(), ItemClassIndex.ARROW)) return true;
             }
         }
 
@@ -1,9 +1,11 @@
 package com.supremosan.truebackpack.registries;
 
-import com.supremosan.truebackpack.listener.BackpackArmorListener;
-
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class BackpackRegistry {
@@ -26,38 +28,62 @@ public class BackpackRegistry {
         }
     }
 
-    private static final Map<String, BackpackEntry> BY_ITEM = new HashMap<>();
-    private static final Map<String, BackpackEntry> BY_BLOCK = new HashMap<>();
-
-    private BackpackRegistry() {
+    private record Snapshot(@Nonnull Map<String, BackpackEntry> byItem,
+                            @Nonnull Map<String, BackpackEntry> byBlock) {
+        private static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of());
     }
 
-    public static void clear() {
-        BY_ITEM.clear();
-        BY_BLOCK.clear();
-        BackpackArmorListener.clear();
+    public static final class Builder {
+        private final Map<String, BackpackEntry> byItem = new LinkedHashMap<>();
+        private final Map<String, BackpackEntry> byBlock = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder register(String itemId, String blockId, short capacity, String model, String texture) {
+            return register(itemId, blockId, capacity, model, texture, null);
+        }
+
+        public Builder registerHelipack(String itemId, String blockId, short capacity, String model, String texture, HelipackConfig helipackConfig) {
+            return register(itemId, blockId, capacity, model, texture, helipackConfig);
+        }
+
+        private Builder register(String itemId, String blockId, short capacity, String model, String texture, @Nullable HelipackConfig helipackConfig) {
+            BackpackEntry entry = new BackpackEntry(itemId, blockId, capacity, model, texture, helipackConfig);
+            byItem.put(itemId, entry);
+            if (blockId != null && !blockId.isEmpty()) byBlock.put(blockId, entry);
+            return this;
+        }
     }
 
-    public static void register(String itemId, String blockId, short capacity, String model, String texture) {
-        register(itemId, blockId, capacity, model, texture, null);
+    private static volatile Snapshot SNAPSHOT = Snapshot.EMPTY;
+
+    private BackpackRegistry() {
     }
 
-    public static void registerHelipack(String itemId, String blockId, short capacity, String model, String texture, HelipackConfig helipackConfig) {
-        register(itemId, blockId, capacity, model, texture, helipackConfig);
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
     }
 
-    private static void register(String itemId, String blockId, short capacity, String model, String texture, @Nullable HelipackConfig helipackConfig) {
-        BackpackEntry entry = new BackpackEntry(itemId, blockId, capacity, model, texture, helipackConfig);
-        BY_ITEM.put(itemId, entry);
-        if (blockId != null && !blockId.isEmpty()) BY_BLOCK.put(blockId, entry);
-        BackpackArmorListener.registerBackpack(itemId, capacity, model, texture);
+    public static void publish(@Nonnull Builder builder) {
+        SNAPSHOT = new Snapshot(
+                Collections.unmodifiableMap(new LinkedHashMap<>(builder.byItem)),
+                Map.copyOf(builder.byBlock));
+        RegistryGeneration.advance();
     }
 
     @Nullable
     public static BackpackEntry getByItem(String itemId) {
-        BackpackEntry exact = BY_ITEM.get(itemId);
+        return ItemClassIndex.classify(itemId).backpack();
+    }
+
+    @Nullable
+    static BackpackEntry scanByItem(@Nonnull String itemId) {
+        Map<String, BackpackEntry> byItem = SNAPSHOT.byItem();
+        BackpackEntry exact = byItem.get(itemId);
         if (exact != null) return exact;
-        for (Map.Entry<String, BackpackEntry> e : BY_ITEM.entrySet()) {
+        for (Map.Entry<String, BackpackEntry> e : byItem.entrySet()) {
             if (itemId.contains(e.getKey())) return e.getValue();
         }
         return null;
@@ -65,6 +91,11 @@ public class BackpackRegistry {
 
     @Nullable
     public static BackpackEntry getByBlock(String blockId) {
-        return BY_BLOCK.get(blockId);
+        return SNAPSHOT.byBlock().get(blockId);
+    }
+
+    @Nonnull
+    public static Collection<BackpackEntry> entries() {
+        return SNAPSHOT.byItem().values();
     }
 }
\ No newline at end of file
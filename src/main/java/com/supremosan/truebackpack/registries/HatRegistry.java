@@ -4,9 +4,9 @@ import com.hypixel.hytale.protocol.ColorLight;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public final class HatRegistry {
 
@@ -29,39 +29,47 @@ public final class HatRegistry {
         }
     }
 
-    private static final Map<String, HatEntry> REGISTRY = new LinkedHashMap<>();
-    private static final Map<String, HatEntry> BY_ITEM_CACHE = new ConcurrentHashMap<>();
+    public static final class Builder {
+        private final Map<String, HatEntry> entries = new LinkedHashMap<>();
+
+        private Builder() {}
+
+        public Builder register(@Nonnull HatEntry entry) {
+            entries.put(entry.baseItemId(), entry);
+            return this;
+        }
+    }
+
+    private static volatile Map<String, HatEntry> REGISTRY = Map.of();
 
     private HatRegistry() {}
 
-    public static void register(@Nonnull HatEntry entry) {
-        REGISTRY.put(entry.baseItemId(), entry);
-        BY_ITEM_CACHE.clear();
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static void publish(@Nonnull Builder builder) {
+        REGISTRY = Collections.unmodifiableMap(new LinkedHashMap<>(builder.entries));
+        RegistryGeneration.advance();
     }
 
     @Nullable
     public static HatEntry getByItem(@Nonnull String itemId) {
-        String normalized = itemId.toLowerCase();
-
-        HatEntry cached = BY_ITEM_CACHE.get(normalized);
-        if (cached != null) return cached;
+        return ItemClassIndex.classify(itemId).hat();
+    }
 
+    @Nullable
+    static HatEntry scanByItem(@Nonnull String itemId) {
+        String normalized = itemId.toLowerCase();
         for (Map.Entry<String, HatEntry> e : REGISTRY.entrySet()) {
             String key = e.getKey().toLowerCase();
-            if (key.equals(normalized) || key.endsWith(":" + normalized)) {
-                BY_ITEM_CACHE.put(normalized, e.getValue());
-                return e.getValue();
-            }
+            if (key.equals(normalized) || key.endsWith(":" + normalized)) return e.getValue();
         }
         return null;
     }
 
     public static boolean isHat(@Nonnull String itemId) {
-        return getByItem(itemId) != null;
-    }
-
-    public static void clear() {
-        REGISTRY.clear();
-        BY_ITEM_CACHE.clear();
+        return ItemClassIndex.is(itemId, ItemClassIndex.HAT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.supremosan.truebackpack.registries;
+
+import com.supremosan.truebackpack.registries.BackpackRegistry.BackpackEntry;
+import com.supremosan.truebackpack.registries.HatRegistry.HatEntry;
+import com.supremosan.truebackpack.util.BoundedCache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public final class ItemClassIndex {
+
+    public static final int BACKPACK = 1;
+    public static final int HELIPACK = 1 << 1;
+    public static final int FUEL = 1 << 2;
+    public static final int HAT = 1 << 3;
+    public static final int ARROW = 1 << 4;
+
+    public static final String VIRTUAL_ID_SEPARATOR = "__bp_";
+
+    private static final String ARROW_ID_FRAGMENT = "Weapon_Arrow";
+    private static final int MAX_CLASSIFIED_IDS = 4096;
+
+    public record ItemClass(int flags, @Nullable BackpackEntry backpack, @Nullable HatEntry hat) {
+        public static final ItemClass NONE = new ItemClass(0, null, null);
+
+        public boolean is(int flag) {
+            return (flags & flag) != 0;
+        }
+
+        public short backpackSize() {
+            return backpack != null ? backpack.capacity() : 0;
+        }
+    }
+
+    private record Classes(long generation, @Nonnull BoundedCache<String, ItemClass> byItem) {
+    }
+
+    private static volatile Classes classes =
+            new Classes(RegistryGeneration.current(), new BoundedCache<>(MAX_CLASSIFIED_IDS));
+
+    private ItemClassIndex() {
+    }
+
+    @Nonnull
+    public static ItemClass classify(@Nullable String itemId) {
+        if (itemId == null || itemId.isEmpty()) return ItemClass.NONE;
+
+        int virtualSeparator = itemId.indexOf(VIRTUAL_ID_SEPARATOR);
+        String baseId = virtualSeparator > 0 ? itemId.substring(0, virtualSeparator) : itemId;
+        return current().computeIfAbsent(baseId, ItemClassIndex::compute);
+    }
+
+    public static boolean is(@Nullable String itemId, int flag) {
+        return classify(itemId).is(flag);
+    }
+
+    public static int size() {
+        return current().size();
+    }
+
+    @Nonnull
+    private static BoundedCache<String, ItemClass> current() {
+        long generation = RegistryGeneration.current();
+        Classes snapshot = classes;
+        if (snapshot.generation() != generation) {
+            snapshot = new Classes(generation, new BoundedCache<>(MAX_CLASSIFIED_IDS));
+            classes = snapshot;
+        }
+        return snapshot.byItem();
+    }
+
+    @Nonnull
+    private static ItemClass compute(@Nonnull String itemId) {
+        int flags = 0;
+
+        BackpackEntry backpack = BackpackRegistry.scanByItem(itemId);
+        if (backpack != null) {
+            flags |= BACKPACK;
+            if (backpack.isHelipack()) flags |= HELIPACK;
+        }
+
+        for (BackpackEntry entry : BackpackRegistry.entries()) {
+            if (entry.isHelipack() && entry.helipackConfig().requiresFuel()
+                    && itemId.equals(entry.helipackConfig().fuelItemId())) {
+                flags |= FUEL;
+                break;
+            }
+        }
+
+        HatEntry hat = HatRegistry.scanByItem(itemId);
+        if (hat != null) flags |= HAT;
+
+        if (itemId.contains(ARROW_ID_FRAGMENT)) flags |= ARROW;
+
+        if (flags == 0) return ItemClass.NONE;
+        return new ItemClass(flags, backpack, hat);
+    }
+}
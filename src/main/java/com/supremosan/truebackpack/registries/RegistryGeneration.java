@@ -0,0 +1,19 @@
+package com.supremosan.truebackpack.registries;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RegistryGeneration {
+
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private RegistryGeneration() {
+    }
+
+    public static long current() {
+        return GENERATION.get();
+    }
+
+    static void advance() {
+        GENERATION.incrementAndGet();
+    }
+}
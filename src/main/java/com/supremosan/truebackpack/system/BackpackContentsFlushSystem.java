@@ -0,0 +1,145 @@
+package com.supremosan.truebackpack.system;
+
+import com.hypixel.hytale.component.*;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.RefSystem;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.entity.UUIDComponent;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.InventoryComponent;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.data.BackpackPlayerState;
+import com.supremosan.truebackpack.listener.BackpackArmorListener;
+import com.supremosan.truebackpack.listener.BackpackTooltipListener;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BackpackContentsFlushSystem extends TickingSystem<EntityStore> {
+
+    private static final Logger LOGGER = Logger.getLogger("TrueBackpack");
+
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_SECONDS = 5;
+
+    private static final Set<Ref<EntityStore>> DIRTY = ConcurrentHashMap.newKeySet();
+
+    public static void register(@Nonnull TrueBackpack plugin) {
+        plugin.getEntityStoreRegistry().registerSystem(new BackpackContentsFlushSystem());
+        plugin.getEntityStoreRegistry().registerSystem(new PlayerStateSystem());
+    }
+
+    public static void markDirty(@Nonnull Ref<EntityStore> ref) {
+        DIRTY.add(ref);
+    }
+
+    public static void flushAll() {
+        Map<World, List<Ref<EntityStore>>> byWorld = new HashMap<>();
+        for (Ref<EntityStore> ref : DIRTY) {
+            if (!ref.isValid()) {
+                DIRTY.remove(ref);
+                continue;
+            }
+            byWorld.computeIfAbsent(ref.getStore().getExternalData().getWorld(), _ -> new ArrayList<>()).add(ref);
+        }
+
+        Map<World, CompletableFuture<Void>> pending = new HashMap<>();
+        for (Map.Entry<World, List<Ref<EntityStore>>> entry : byWorld.entrySet()) {
+            pending.put(entry.getKey(), CompletableFuture.runAsync(() -> flushClaimed(entry.getValue()), entry.getKey()));
+        }
+
+        for (Map.Entry<World, CompletableFuture<Void>> entry : pending.entrySet()) {
+            try {
+                entry.getValue().get(SHUTDOWN_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flushClaimed(byWorld.get(entry.getKey()));
+            } catch (ExecutionException | TimeoutException e) {
+                LOGGER.log(Level.WARNING, "[TrueBackpack] World " + entry.getKey().getName()
+                        + " did not flush backpack contents in time, flushing on the shutdown thread", e);
+                flushClaimed(byWorld.get(entry.getKey()));
+            }
+        }
+    }
+
+    private static void flushClaimed(@Nonnull List<Ref<EntityStore>> refs) {
+        for (Ref<EntityStore> ref : refs) {
+            if (DIRTY.remove(ref) && ref.isValid()) flush(ref, ref.getStore());
+        }
+    }
+
+    @Override
+    public void tick(float dt, int systemIndex, @Nonnull Store<EntityStore> store) {
+        if (DIRTY.isEmpty()) return;
+
+        Iterator<Ref<EntityStore>> it = DIRTY.iterator();
+        while (it.hasNext()) {
+            Ref<EntityStore> ref = it.next();
+            if (!ref.isValid()) {
+                it.remove();
+                continue;
+            }
+            if (ref.getStore() != store) continue;
+
+            it.remove();
+            flush(ref, store);
+        }
+    }
+
+    static void flush(@Nonnull Ref<EntityStore> ref, @Nonnull Store<EntityStore> store) {
+        BackpackPlayerState state = store.getComponent(ref, BackpackPlayerState.TYPE);
+        if (state == null || !state.isDirty()) return;
+
+        UUIDComponent uuidComp = store.getComponent(ref, UUIDComponent.getComponentType());
+        if (uuidComp == null) return;
+
+        InventoryComponent.Armor armorComp = store.getComponent(ref, InventoryComponent.Armor.getComponentType());
+        BackpackArmorListener.flushPendingContents(
+                uuidComp.getUuid().toString(),
+                state,
+                armorComp,
+                store.getComponent(ref, InventoryComponent.Storage.getComponentType()),
+                store.getComponent(ref, InventoryComponent.Backpack.getComponentType()),
+                store.getComponent(ref, InventoryComponent.Hotbar.getComponentType()));
+        BackpackTooltipListener.refreshEquippedTooltip(ref, store, armorComp);
+    }
+
+    public static class PlayerStateSystem extends RefSystem<EntityStore> {
+
+        @Override
+        public void onEntityAdded(@Nonnull Ref<EntityStore> ref,
+                                  @Nonnull AddReason reason,
+                                  @Nonnull Store<EntityStore> store,
+                                  @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        }
+
+        @Override
+        public void onEntityRemove(@Nonnull Ref<EntityStore> ref,
+                                   @Nonnull RemoveReason reason,
+                                   @Nonnull Store<EntityStore> store,
+                                   @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+            DIRTY.remove(ref);
+            flush(ref, store);
+        }
+
+        @Nullable
+        @Override
+        public Query<EntityStore> getQuery() {
+            return Player.getComponentType();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.supremosan.truebackpack.system;
+
+import com.hypixel.hytale.server.core.event.events.ecs.InventoryChangeEvent;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+
+public final class FuelTally {
+
+    private String fuelItemId;
+    private int[] counts = new int[0];
+    private final BitSet fuelSlots = new BitSet();
+    private int total;
+    private boolean built;
+
+    @Nonnull
+    public FuelTally copy() {
+        FuelTally copy = new FuelTally();
+        copy.fuelItemId = fuelItemId;
+        copy.counts = counts.clone();
+        copy.fuelSlots.or(fuelSlots);
+        copy.total = total;
+        copy.built = built;
+        return copy;
+    }
+
+    public void update(@Nonnull InventoryChangeEvent event, @Nonnull ItemContainer container) {
+        if (!built) return;
+        if (counts.length != container.getCapacity()) {
+            built = false;
+            return;
+        }
+
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            if (event.getTransaction().wasSlotModified(slot)) set(slot, countAt(container, slot));
+        }
+    }
+
+    public void invalidate() {
+        built = false;
+    }
+
+    public int total(@Nonnull ItemContainer container, @Nonnull String fuelItemId) {
+        ensure(container, fuelItemId);
+        return total;
+    }
+
+    public boolean has(@Nonnull ItemContainer container, @Nonnull String fuelItemId) {
+        return total(container, fuelItemId) > 0;
+    }
+
+    public boolean consume(@Nonnull ItemContainer container, @Nonnull String fuelItemId, int amount) {
+        ensure(container, fuelItemId);
+
+        int remaining = amount;
+        for (int slot = fuelSlots.nextSetBit(0); slot >= 0 && remaining > 0; slot = fuelSlots.nextSetBit(slot + 1)) {
+            ItemStack stack = container.getItemStack((short) slot);
+            int available = countAt(container, (short) slot);
+            if (available <= 0) {
+                set(slot, 0);
+                continue;
+            }
+
+            if (available >= remaining) {
+                container.setItemStackForSlot((short) slot, stack.withQuantity(available - remaining));
+                set(slot, available - remaining);
+                remaining = 0;
+            } else {
+                remaining -= available;
+                container.setItemStackForSlot((short) slot, ItemStack.EMPTY);
+                set(slot, 0);
+            }
+        }
+
+        return remaining != 0;
+    }
+
+    private void ensure(@Nonnull ItemContainer container, @Nonnull String fuelItemId) {
+        if (built && fuelItemId.equals(this.fuelItemId) && counts.length == container.getCapacity()) return;
+
+        this.fuelItemId = fuelItemId;
+        counts = new int[container.getCapacity()];
+        fuelSlots.clear();
+        total = 0;
+        for (short slot = 0; slot < container.getCapacity(); slot++) {
+            set(slot, countAt(container, slot));
+        }
+        built = true;
+    }
+
+    private void set(int slot, int count) {
+        total += count - counts[slot];
+        counts[slot] = count;
+        fuelSlots.set(slot, count > 0);
+    }
+
+    private int countAt(@Nonnull ItemContainer container, short slot) {
+        ItemStack stack = container.getItemStack(slot);
+        if (stack == null || stack.isEmpty() || !fuelItemId.equals(stack.getItemId())) return 0;
+        return Math.max(stack.getQuantity(), 0);
+    }
+}
@@ -21,20 +21,20 @@ import com.hypixel.hytale.server.core.inventory.InventoryComponent;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.protocol.packets.connection.PongType;
 import com.hypixel.hytale.server.core.io.PacketHandler;
+import com.supremosan.truebackpack.config.backpack.BackpackConfig;
+import com.supremosan.truebackpack.config.backpack.BackpackConfigService;
 import com.supremosan.truebackpack.factory.BackpackItemFactory;
 import com.supremosan.truebackpack.listener.BackpackArmorListener;
 import com.supremosan.truebackpack.listener.CosmeticListener;
-import com.supremosan.truebackpack.registries.BackpackRegistry;
-import com.supremosan.truebackpack.registries.BackpackRegistry.BackpackEntry;
 import com.supremosan.truebackpack.registries.BackpackRegistry.HelipackConfig;
+import com.supremosan.truebackpack.registries.ItemClassIndex;
+import com.supremosan.truebackpack.system.HelipackState.AnimState;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -49,7 +49,7 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
     private static final String ANIM_ACTIVE = "Active";
     private static final String ANIM_RETRACT = "Retract";
     private static final AnimationSlot ANIM_SLOT = AnimationSlot.ServerAction;
-    private static final float FALLBACK_ANIM_DURATION = 0.5f;
+    static final float FALLBACK_ANIM_DURATION = 0.5f;
 
     private static final short CHEST_SLOT = 1;
     private static final short STORAGE_SLOT = 0;
@@ -58,8 +58,6 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
     private final ComponentType<EntityStore, MovementStatesComponent> movementStatesComponentType;
     private Query<EntityStore> query;
 
-    private final Map<UUID, JumpState> jumpStates = new HashMap<>();
-
     public HelipackFlySystem(
             ComponentType<EntityStore, Player> playerComponentType,
             ComponentType<EntityStore, MovementStatesComponent> movementStatesComponentType
@@ -98,7 +96,7 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
     @Override
     public Query<EntityStore> getQuery() {
         if (query == null) {
-            query = Query.and(playerComponentType, movementStatesComponentType);
+            query = Query.and(playerComponentType, movementStatesComponentType, HelipackState.TYPE);
         }
         return query;
     }
@@ -113,40 +111,18 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
     ) {
         Player player = archetypeChunk.getComponent(index, playerComponentType);
         MovementStatesComponent movementStatesComponent = archetypeChunk.getComponent(index, movementStatesComponentType);
+        HelipackState jumpState = archetypeChunk.getComponent(index, HelipackState.TYPE);
 
-        if (player == null || movementStatesComponent == null) return;
+        if (player == null || movementStatesComponent == null || jumpState == null) return;
 
         Ref<EntityStore> ref = player.getReference();
         if (ref == null) return;
 
-        UUIDComponent uuidComp = store.getComponent(ref, UUIDComponent.getComponentType());
-        if (uuidComp == null) return;
-
-        UUID uuid = uuidComp.getUuid();
-        String equippedItemId = BackpackArmorListener.getEquippedItemId(uuid.toString());
-
-        JumpState jumpState = jumpStates.get(uuid);
-        boolean hadState = jumpState != null;
-
-        if (equippedItemId == null) {
-            if (hadState) {
-                stopHelipackAnimation(ref, store);
-                jumpStates.remove(uuid);
-            }
-            return;
-        }
-
-        BackpackEntry entry = BackpackRegistry.getByItem(equippedItemId);
-
-        if (entry == null || !entry.isHelipack()) {
-            if (hadState) {
-                stopHelipackAnimation(ref, store);
-                jumpStates.remove(uuid);
-            }
-            return;
-        }
+        PlayerRef playerRef = archetypeChunk.getComponent(index, PlayerRef.getComponentType());
+        if (playerRef == null) return;
 
-        HelipackConfig config = entry.helipackConfig();
+        UUID uuid = playerRef.getUuid();
+        HelipackConfig config = currentConfig(jumpState, ref, store, commandBuffer);
         if (config == null) return;
 
         InventoryComponent.Armor armorComp = archetypeChunk.getComponent(index, InventoryComponent.Armor.getComponentType());
@@ -155,12 +131,10 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
 
         MovementStates current = movementStatesComponent.getMovementStates();
 
-        jumpState = jumpStates.computeIfAbsent(uuid, _ -> new JumpState());
-
         tickAnimationSequence(dt, jumpState, store, ref, config);
         restoreAnimationAfterRebuild(uuid, jumpState, store, ref, config);
 
-        float pingSeconds = resolvePingSeconds(uuid);
+        float pingSeconds = samplePingSeconds(dt, playerRef, jumpState);
         float effectiveWindow = DOUBLE_JUMP_WINDOW + Math.min(pingSeconds * PING_COMPENSATION_FACTOR, MAX_PING_COMPENSATION);
 
         jumpState.timeSinceLastTrigger += dt;
@@ -169,8 +143,8 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
             jumpState.fuelTimer += dt;
             if (jumpState.fuelTimer >= config.fuelConsumeInterval()) {
                 jumpState.fuelTimer = 0f;
-                if (config.requiresFuel() && consumeFuel(backpackComp, config.fuelItemId(), config.fuelConsumeAmount())) {
-                    disableFlight(uuid, store, archetypeChunk.getReferenceTo(index), movementStatesComponent, jumpState, armorComp, storageComp, config);
+                if (config.requiresFuel() && consumeFuel(backpackComp, jumpState, config.fuelItemId(), config.fuelConsumeAmount())) {
+                    disableFlight(playerRef, store, archetypeChunk.getReferenceTo(index), movementStatesComponent, jumpState, armorComp, storageComp, config);
                     return;
                 }
             }
@@ -189,14 +163,14 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
 
         if (justStartedJump && !current.flying && !jumpState.isFlying) {
             if (config.requiresFuel()) {
-                boolean hasFuelItem = hasFuel(backpackComp, config.fuelItemId());
-                float savedTime = readSavedFuelTime(armorComp, storageComp, uuid.toString());
+                boolean hasFuelItem = hasFuel(backpackComp, jumpState, config.fuelItemId());
+                float savedTime = readSavedFuelTime(armorComp, storageComp, store, ref);
                 if (!hasFuelItem && savedTime <= 0f) return;
             }
 
             boolean withinWindow = jumpState.timeSinceLastTrigger <= effectiveWindow;
             if (jumpState.windowOpen && withinWindow) {
-                enableFlight(uuid, store, archetypeChunk.getReferenceTo(index), jumpState, armorComp, storageComp, backpackComp, config);
+                enableFlight(playerRef, store, archetypeChunk.getReferenceTo(index), jumpState, armorComp, storageComp, backpackComp, config);
                 jumpState.windowOpen = false;
                 jumpState.timeSinceLastTrigger = Float.MAX_VALUE;
                 return;
@@ -207,8 +181,8 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         }
 
         if (justLanded) {
-            if (isFlying(uuid)) {
-                disableFlight(uuid, store, archetypeChunk.getReferenceTo(index), movementStatesComponent, jumpState, armorComp, storageComp, config);
+            if (jumpState.isFlying) {
+                disableFlight(playerRef, store, archetypeChunk.getReferenceTo(index), movementStatesComponent, jumpState, armorComp, storageComp, config);
                 return;
             }
 
@@ -219,43 +193,52 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         }
 
         if (jumpState.isFlying && !current.flying && !justLanded) {
-            PlayerRef reassertRef = Universe.get().getPlayer(uuid);
-            if (reassertRef != null) {
-                movementStatesComponent.getMovementStates().flying = true;
-                reassertRef.getPacketHandler().writeNoCache(new SetMovementStates(new SavedMovementStates(true)));
-
-                if (jumpState.animState != AnimState.ACTIVE) {
-                    playHelipackAnimation(ref, config, ANIM_ACTIVE, store);
-                    jumpState.animState = AnimState.ACTIVE;
-                    jumpState.animTimer = 0f;
-                }
+            movementStatesComponent.getMovementStates().flying = true;
+            playerRef.getPacketHandler().writeNoCache(new SetMovementStates(new SavedMovementStates(true)));
+
+            if (jumpState.animState != AnimState.ACTIVE) {
+                playHelipackAnimation(ref, config, ANIM_ACTIVE, store);
+                jumpState.animState = AnimState.ACTIVE;
+                jumpState.animTimer = 0f;
             }
         }
 
         if (justStartedJump && jumpState.isFlying) {
             boolean withinWindow = jumpState.timeSinceLastTrigger <= effectiveWindow;
             if (withinWindow) {
-                disableFlight(uuid, store, archetypeChunk.getReferenceTo(index), movementStatesComponent, jumpState, armorComp, storageComp, config);
+                disableFlight(playerRef, store, archetypeChunk.getReferenceTo(index), movementStatesComponent, jumpState, armorComp, storageComp, config);
             } else {
                 jumpState.timeSinceLastTrigger = 0f;
             }
         }
     }
 
-    private float resolvePingSeconds(@Nonnull UUID uuid) {
-        PlayerRef playerRef = Universe.get().getPlayer(uuid);
-        if (playerRef == null) return 0f;
+    private float samplePingSeconds(float dt, @Nonnull PlayerRef playerRef, @Nonnull HelipackState jumpState) {
+        BackpackConfig.Settings settings = BackpackConfigService.settings();
+
+        jumpState.pingSampleTimer += dt;
+        if (jumpState.pingSampleTimer < settings.helipackPingSampleSeconds) return jumpState.pingSeconds;
+        jumpState.pingSampleTimer = 0f;
+
         double pingMicros = playerRef.getPacketHandler()
                 .getPingInfo(PongType.Tick)
                 .getPingMetricSet()
                 .getAverage(PacketHandler.PingInfo.ONE_SECOND_INDEX);
-        if (pingMicros <= 0) return 0f;
-        return (float) (pingMicros / 1_000_000.0);
+        if (pingMicros <= 0) return jumpState.pingSeconds;
+
+        float sample = (float) (pingMicros / 1_000_000.0);
+        if (!jumpState.pingSampled) {
+            jumpState.pingSeconds = sample;
+            jumpState.pingSampled = true;
+        } else {
+            jumpState.pingSeconds += settings.helipackPingSmoothing * (sample - jumpState.pingSeconds);
+        }
+        return jumpState.pingSeconds;
     }
 
     private void restoreAnimationAfterRebuild(
             @Nonnull UUID uuid,
-            @Nonnull JumpState jumpState,
+            @Nonnull HelipackState jumpState,
             @Nonnull Store<EntityStore> store,
             @Nonnull Ref<EntityStore> ref,
             @Nonnull HelipackConfig config) {
@@ -273,7 +256,7 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         playHelipackAnimation(ref, config, animId, store);
     }
 
-    private void tickAnimationSequence(float dt, JumpState jumpState, Store<EntityStore> store, Ref<EntityStore> ref, HelipackConfig config) {
+    private void tickAnimationSequence(float dt, HelipackState jumpState, Store<EntityStore> store, Ref<EntityStore> ref, HelipackConfig config) {
         if (jumpState.animState == AnimState.IDLE) return;
 
         jumpState.animTimer += dt;
@@ -302,7 +285,26 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         }
     }
 
-    private void stopHelipackAnimation(
+    @Nullable
+    private static HelipackConfig currentConfig(
+            @Nonnull HelipackState jumpState,
+            @Nonnull Ref<EntityStore> ref,
+            @Nonnull Store<EntityStore> store,
+            @Nonnull CommandBuffer<EntityStore> commandBuffer) {
+        if (jumpState.isConfigCurrent()) return jumpState.getConfig();
+
+        ItemClassIndex.ItemClass itemClass = ItemClassIndex.classify(jumpState.getEquippedItemId());
+        if (!itemClass.is(ItemClassIndex.HELIPACK) || itemClass.backpack() == null) {
+            stopHelipackAnimation(ref, store);
+            commandBuffer.removeComponent(ref, HelipackState.TYPE);
+            return null;
+        }
+
+        jumpState.setConfig(itemClass.backpack().helipackConfig());
+        return jumpState.getConfig();
+    }
+
+    public static void stopHelipackAnimation(
             @Nonnull Ref<EntityStore> ref,
             @Nonnull Store<EntityStore> store) {
         AnimationUtils.stopAnimation(ref, ANIM_SLOT, true, store);
@@ -323,49 +325,53 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         return 1f / Math.abs(anim.speed);
     }
 
-    private boolean hasFuel(@Nullable InventoryComponent.Backpack backpackComp, @Nonnull String fuelItemId) {
+    private boolean hasFuel(@Nullable InventoryComponent.Backpack backpackComp,
+                            @Nonnull HelipackState jumpState,
+                            @Nonnull String fuelItemId) {
         if (backpackComp == null) return false;
-        ItemContainer backpack = backpackComp.getInventory();
-        for (short slot = 0; slot < backpack.getCapacity(); slot++) {
-            ItemStack stack = backpack.getItemStack(slot);
-            if (stack != null && !stack.isEmpty() && fuelItemId.equals(stack.getItemId()) && stack.getQuantity() > 0) {
-                return true;
-            }
-        }
-        return false;
+        return jumpState.fuelTally.has(backpackComp.getInventory(), fuelItemId);
     }
 
-    private boolean consumeFuel(@Nullable InventoryComponent.Backpack backpackComp, @Nonnull String fuelItemId, int amount) {
+    private boolean consumeFuel(@Nullable InventoryComponent.Backpack backpackComp,
+                                @Nonnull HelipackState jumpState,
+                                @Nonnull String fuelItemId,
+                                int amount) {
         if (backpackComp == null) return true;
-        ItemContainer backpack = backpackComp.getInventory();
+        return jumpState.fuelTally.consume(backpackComp.getInventory(), fuelItemId, amount);
+    }
 
-        int remaining = amount;
+    public static float getEstimatedFlightSeconds(@Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref) {
+        HelipackState jumpState = store.getComponent(ref, HelipackState.TYPE);
+        if (jumpState == null) return 0f;
 
-        for (short slot = 0; slot < backpack.getCapacity() && remaining > 0; slot++) {
-            ItemStack stack = backpack.getItemStack(slot);
-            if (stack == null || stack.isEmpty() || !fuelItemId.equals(stack.getItemId())) continue;
+        HelipackConfig config = jumpState.getConfig();
+        if (config == null) return 0f;
+        if (!config.requiresFuel() || config.fuelConsumeAmount() <= 0) return Float.POSITIVE_INFINITY;
 
-            int available = stack.getQuantity();
-            if (available <= 0) continue;
+        InventoryComponent.Backpack backpackComp = store.getComponent(ref, InventoryComponent.Backpack.getComponentType());
+        int fuel = backpackComp != null
+                ? jumpState.fuelTally.total(backpackComp.getInventory(), config.fuelItemId())
+                : 0;
 
-            if (available >= remaining) {
-                backpack.setItemStackForSlot(slot, stack.withQuantity(available - remaining));
-                remaining = 0;
-            } else {
-                remaining -= available;
-                backpack.setItemStackForSlot(slot, ItemStack.EMPTY);
-            }
+        float seconds = (fuel / config.fuelConsumeAmount()) * config.fuelConsumeInterval();
+        if (jumpState.isFlying) {
+            seconds += Math.max(0f, config.fuelConsumeInterval() - jumpState.fuelTimer);
+        } else {
+            seconds += readSavedFuelTime(
+                    store.getComponent(ref, InventoryComponent.Armor.getComponentType()),
+                    store.getComponent(ref, InventoryComponent.Storage.getComponentType()),
+                    store, ref);
         }
-
-        return remaining != 0;
+        return seconds;
     }
 
     @Nullable
-    private EquipLocation findEquipLocation(
+    private static EquipLocation findEquipLocation(
             @Nullable InventoryComponent.Armor armorComp,
             @Nullable InventoryComponent.Storage storageComp,
-            @Nonnull String playerUuid) {
-        String equippedItemId = BackpackArmorListener.getEquippedItemId(playerUuid);
+            @Nonnull Store<EntityStore> store,
+            @Nonnull Ref<EntityStore> ref) {
+        String equippedItemId = BackpackArmorListener.getEquippedItemId(store, ref);
         if (equippedItemId == null) return null;
 
         if (armorComp != null) {
@@ -385,11 +391,12 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         return null;
     }
 
-    private float readSavedFuelTime(
+    private static float readSavedFuelTime(
             @Nullable InventoryComponent.Armor armorComp,
             @Nullable InventoryComponent.Storage storageComp,
-            @Nonnull String playerUuid) {
-        EquipLocation loc = findEquipLocation(armorComp, storageComp, playerUuid);
+            @Nonnull Store<EntityStore> store,
+            @Nonnull Ref<EntityStore> ref) {
+        EquipLocation loc = findEquipLocation(armorComp, storageComp, store, ref);
         if (loc == null) return 0f;
         return BackpackItemFactory.getRemainingFuelTime(loc.stack);
     }
@@ -397,24 +404,22 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
     private void writeSavedFuelTime(
             @Nullable InventoryComponent.Armor armorComp,
             @Nullable InventoryComponent.Storage storageComp,
-            @Nonnull String playerUuid,
+            @Nonnull Store<EntityStore> store,
+            @Nonnull Ref<EntityStore> ref,
             float seconds) {
-        EquipLocation loc = findEquipLocation(armorComp, storageComp, playerUuid);
+        EquipLocation loc = findEquipLocation(armorComp, storageComp, store, ref);
         if (loc == null) return;
         loc.container.setItemStackForSlot(loc.slot, BackpackItemFactory.setRemainingFuelTime(loc.stack, seconds));
     }
 
-    private void enableFlight(UUID uuid, Store<EntityStore> store, Ref<EntityStore> ref, JumpState jumpState, @Nullable InventoryComponent.Armor armorComp, @Nullable InventoryComponent.Storage storageComp, @Nullable InventoryComponent.Backpack backpackComp, HelipackConfig config) {
-        PlayerRef playerRef = Universe.get().getPlayer(uuid);
-        if (playerRef == null) return;
-
+    private void enableFlight(PlayerRef playerRef, Store<EntityStore> store, Ref<EntityStore> ref, HelipackState jumpState, @Nullable InventoryComponent.Armor armorComp, @Nullable InventoryComponent.Storage storageComp, @Nullable InventoryComponent.Backpack backpackComp, HelipackConfig config) {
         if (config.requiresFuel()) {
-            float savedTime = readSavedFuelTime(armorComp, storageComp, uuid.toString());
+            float savedTime = readSavedFuelTime(armorComp, storageComp, store, ref);
             if (savedTime > 0f) {
                 jumpState.fuelTimer = config.fuelConsumeInterval() - savedTime;
-                writeSavedFuelTime(armorComp, storageComp, uuid.toString(), 0f);
+                writeSavedFuelTime(armorComp, storageComp, store, ref, 0f);
             } else {
-                if (consumeFuel(backpackComp, config.fuelItemId(), config.fuelConsumeAmount())) return;
+                if (consumeFuel(backpackComp, jumpState, config.fuelItemId(), config.fuelConsumeAmount())) return;
                 jumpState.fuelTimer = 0f;
             }
         }
@@ -442,18 +447,15 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
     }
 
     private void disableFlight(
-            UUID uuid,
+            PlayerRef playerRef,
             Store<EntityStore> store,
             Ref<EntityStore> ref,
             MovementStatesComponent movementStatesComponent,
-            JumpState jumpState,
+            HelipackState jumpState,
             @Nullable InventoryComponent.Armor armorComp,
             @Nullable InventoryComponent.Storage storageComp,
             HelipackConfig config
     ) {
-        PlayerRef playerRef = Universe.get().getPlayer(uuid);
-        if (playerRef == null) return;
-
         MovementManager movementManager = store.getComponent(ref, MovementManager.getComponentType());
         if (movementManager == null) return;
 
@@ -471,7 +473,7 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         if (config.requiresFuel() && jumpState.fuelTimer > 0f) {
             float remainingTime = config.fuelConsumeInterval() - jumpState.fuelTimer;
             if (remainingTime > 0f) {
-                writeSavedFuelTime(armorComp, storageComp, uuid.toString(), remainingTime);
+                writeSavedFuelTime(armorComp, storageComp, store, ref, remainingTime);
             }
         }
 
@@ -487,31 +489,6 @@ public class HelipackFlySystem extends EntityTickingSystem<EntityStore> {
         playHelipackAnimation(ref, config, ANIM_RETRACT, store);
     }
 
-    public boolean isFlying(UUID uuid) {
-        JumpState jumpState = jumpStates.get(uuid);
-        return jumpState != null && jumpState.isFlying;
-    }
-
-    private enum AnimState {
-        IDLE,
-        DEPLOYING,
-        ACTIVE,
-        RETRACTING
-    }
-
-    private static class JumpState {
-        float timeSinceLastTrigger = Float.MAX_VALUE;
-        float fuelTimer = 0f;
-        boolean windowOpen = false;
-        boolean isFlying = false;
-        AnimState animState = AnimState.IDLE;
-        float animTimer = 0f;
-        float deployDuration = FALLBACK_ANIM_DURATION;
-        float retractDuration = FALLBACK_ANIM_DURATION;
-        boolean previousJumping = false;
-        boolean previousOnGround = true;
-    }
-
     private record EquipLocation(ItemContainer container, short slot, ItemStack stack) {
     }
 }
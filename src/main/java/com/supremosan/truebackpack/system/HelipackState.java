@@ -0,0 +1,112 @@
+package com.supremosan.truebackpack.system;
+
+import com.hypixel.hytale.component.Component;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.supremosan.truebackpack.TrueBackpack;
+import com.supremosan.truebackpack.registries.BackpackRegistry.HelipackConfig;
+import com.supremosan.truebackpack.registries.RegistryGeneration;
+import org.jspecify.annotations.NonNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+public final class HelipackState implements Component<EntityStore> {
+
+    public static ComponentType<EntityStore, HelipackState> TYPE;
+
+    enum AnimState {
+        IDLE,
+        DEPLOYING,
+        ACTIVE,
+        RETRACTING
+    }
+
+    float timeSinceLastTrigger = Float.MAX_VALUE;
+    float fuelTimer = 0f;
+    boolean windowOpen = false;
+    boolean isFlying = false;
+    AnimState animState = AnimState.IDLE;
+    float animTimer = 0f;
+    float deployDuration = HelipackFlySystem.FALLBACK_ANIM_DURATION;
+    float retractDuration = HelipackFlySystem.FALLBACK_ANIM_DURATION;
+    boolean previousJumping = false;
+    boolean previousOnGround = true;
+    float pingSeconds = 0f;
+    float pingSampleTimer = Float.MAX_VALUE;
+    boolean pingSampled = false;
+    final FuelTally fuelTally;
+    private HelipackConfig config;
+    private long configGeneration = -1;
+    private String equippedInstanceId;
+    private String equippedItemId;
+
+    public HelipackState() {
+        this.fuelTally = new FuelTally();
+    }
+
+    private HelipackState(@Nonnull HelipackState other) {
+        this.timeSinceLastTrigger = other.timeSinceLastTrigger;
+        this.fuelTimer = other.fuelTimer;
+        this.windowOpen = other.windowOpen;
+        this.isFlying = other.isFlying;
+        this.animState = other.animState;
+        this.animTimer = other.animTimer;
+        this.deployDuration = other.deployDuration;
+        this.retractDuration = other.retractDuration;
+        this.previousJumping = other.previousJumping;
+        this.previousOnGround = other.previousOnGround;
+        this.pingSeconds = other.pingSeconds;
+        this.pingSampleTimer = other.pingSampleTimer;
+        this.pingSampled = other.pingSampled;
+        this.fuelTally = other.fuelTally.copy();
+        this.config = other.config;
+        this.configGeneration = other.configGeneration;
+        this.equippedInstanceId = other.equippedInstanceId;
+        this.equippedItemId = other.equippedItemId;
+    }
+
+    @Nonnull
+    public FuelTally getFuelTally() {
+        return fuelTally;
+    }
+
+    @Nullable
+    public HelipackConfig getConfig() {
+        return config;
+    }
+
+    public void setConfig(@Nullable HelipackConfig config) {
+        this.config = config;
+        this.configGeneration = RegistryGeneration.current();
+    }
+
+    public boolean isConfigCurrent() {
+        return configGeneration == RegistryGeneration.current();
+    }
+
+    @Nullable
+    public String getEquippedItemId() {
+        return equippedItemId;
+    }
+
+    public boolean setEquipped(@Nullable String instanceId, @Nullable String itemId) {
+        if (Objects.equals(equippedInstanceId, instanceId) && Objects.equals(equippedItemId, itemId)) return false;
+        this.equippedInstanceId = instanceId;
+        this.equippedItemId = itemId;
+        return true;
+    }
+
+    @Override
+    public @NonNull Component<EntityStore> clone() {
+        return new HelipackState(this);
+    }
+
+    public static void register(@Nonnull TrueBackpack plugin) {
+        TYPE = plugin.getEntityStoreRegistry().registerComponent(
+                HelipackState.class,
+                HelipackState::new
+        );
+    }
+}
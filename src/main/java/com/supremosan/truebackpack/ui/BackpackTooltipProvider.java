@@ -5,10 +5,13 @@ import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.modules.i18n.I18nModule;
 import com.supremosan.truebackpack.factory.BackpackItemFactory;
 import com.supremosan.truebackpack.listener.BackpackArmorListener;
+import com.supremosan.truebackpack.registries.RegistryGeneration;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BackpackTooltipProvider {
 
@@ -18,6 +21,20 @@ public class BackpackTooltipProvider {
     private static final String KEY_ITEMS    = "server.truebackpack.tooltip.items";
     private static final String KEY_EQUIPPED = "server.truebackpack.tooltip.equipped";
 
+    private record Words(@Nonnull String title,
+                         @Nonnull String slots,
+                         @Nonnull String items,
+                         @Nonnull String empty,
+                         @Nonnull String equipped) {
+    }
+
+    private record Caches(long generation,
+                          @Nonnull Map<String, Words> words,
+                          @Nonnull Map<String, Map<String, String>> names) {
+    }
+
+    private static volatile Caches caches = newCaches(RegistryGeneration.current());
+
     private BackpackTooltipProvider() {}
 
     @Nullable
@@ -29,15 +46,14 @@ public class BackpackTooltipProvider {
         if (sizeBonus == 0) return null;
 
         if (BackpackItemFactory.isEquipped(stack)) {
-            I18nModule i18n = I18nModule.get();
-            return resolve(i18n, language, KEY_EQUIPPED);
+            return words(language).equipped();
         }
 
         if (!BackpackItemFactory.hasContents(stack)) {
             return buildEmptyTooltip(sizeBonus, language);
         }
 
-        List<ItemStack> contents = BackpackItemFactory.loadContents(stack);
+        List<ItemStack> contents = BackpackItemFactory.contentsView(stack);
         return buildContentsTooltip(contents, sizeBonus, language);
     }
 
@@ -50,23 +66,16 @@ public class BackpackTooltipProvider {
 
     @Nonnull
     public static String buildEmptyTooltip(short sizeBonus, @Nullable String language) {
-        I18nModule i18n  = I18nModule.get();
-        String title     = resolve(i18n, language, KEY_TITLE);
-        String slotsWord = resolve(i18n, language, KEY_SLOTS);
-        String emptyWord = resolve(i18n, language, KEY_EMPTY);
-
-        return title + " (" + sizeBonus + " " + slotsWord + ")\n" + emptyWord;
+        Words words = words(language);
+        return words.title() + " (" + sizeBonus + " " + words.slots() + ")\n" + words.empty();
     }
 
     @Nonnull
     private static String buildContentsTooltip(@Nonnull List<ItemStack> contents,
                                                short sizeBonus,
                                                @Nullable String language) {
-        I18nModule i18n  = I18nModule.get();
-        String title     = resolve(i18n, language, KEY_TITLE);
-        String slotsWord = resolve(i18n, language, KEY_SLOTS);
-        String itemsWord = resolve(i18n, language, KEY_ITEMS);
-        String emptyWord = resolve(i18n, language, KEY_EMPTY);
+        Words words = words(language);
+        Map<String, String> names = names(language);
 
         int usedSlots  = 0;
         int totalItems = 0;
@@ -77,7 +86,7 @@ public class BackpackTooltipProvider {
             usedSlots++;
             totalItems += item.getQuantity();
 
-            String displayName = resolveItemName(item.getItemId(), language);
+            String displayName = itemName(names, item.getItemId(), language);
             lines.append("\n  ")
                     .append(item.getQuantity())
                     .append("x ")
@@ -85,16 +94,16 @@ public class BackpackTooltipProvider {
         }
 
         StringBuilder tooltip = new StringBuilder();
-        tooltip.append(title)
+        tooltip.append(words.title())
                 .append(" (")
                 .append(usedSlots).append("/").append(sizeBonus)
-                .append(" ").append(slotsWord)
+                .append(" ").append(words.slots())
                 .append(", ")
-                .append(totalItems).append(" ").append(itemsWord)
+                .append(totalItems).append(" ").append(words.items())
                 .append(")");
 
         if (usedSlots == 0) {
-            tooltip.append("\n").append(emptyWord);
+            tooltip.append("\n").append(words.empty());
         } else {
             tooltip.append(lines);
         }
@@ -102,6 +111,63 @@ public class BackpackTooltipProvider {
         return tooltip.toString();
     }
 
+    public static void invalidate() {
+        caches = newCaches(RegistryGeneration.current());
+    }
+
+    @Nonnull
+    private static Caches caches() {
+        Caches snapshot = caches;
+        long generation = RegistryGeneration.current();
+        if (snapshot.generation() != generation) {
+            snapshot = newCaches(generation);
+            caches = snapshot;
+        }
+        return snapshot;
+    }
+
+    @Nonnull
+    private static Caches newCaches(long generation) {
+        return new Caches(generation, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    @Nonnull
+    private static String languageKey(@Nullable String language) {
+        return language != null ? language : "";
+    }
+
+    @Nonnull
+    private static Words words(@Nullable String language) {
+        I18nModule i18n = I18nModule.get();
+        if (i18n == null) return resolveWords(null, language);
+
+        return caches().words().computeIfAbsent(languageKey(language), _ -> resolveWords(i18n, language));
+    }
+
+    @Nonnull
+    private static Words resolveWords(@Nullable I18nModule i18n, @Nullable String language) {
+        return new Words(
+                resolve(i18n, language, KEY_TITLE),
+                resolve(i18n, language, KEY_SLOTS),
+                resolve(i18n, language, KEY_ITEMS),
+                resolve(i18n, language, KEY_EMPTY),
+                resolve(i18n, language, KEY_EQUIPPED));
+    }
+
+    @Nullable
+    private static Map<String, String> names(@Nullable String language) {
+        if (I18nModule.get() == null) return null;
+        return caches().names().computeIfAbsent(languageKey(language), _ -> new ConcurrentHashMap<>());
+    }
+
+    @Nonnull
+    private static String itemName(@Nullable Map<String, String> names,
+                                   @Nullable String itemId,
+                                   @Nullable String language) {
+        if (names == null || itemId == null || itemId.isBlank()) return resolveItemName(itemId, language);
+        return names.computeIfAbsent(itemId, id -> resolveItemName(id, language));
+    }
+
     @Nonnull
     private static String resolveItemName(@Nullable String itemId, @Nullable String language) {
         if (itemId == null || itemId.isBlank()) return "Unknown";
@@ -0,0 +1,161 @@
+package com.supremosan.truebackpack.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public final class BoundedCache<K, V> {
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_SIZE = 16;
+
+    private final int maxSize;
+    private final Stripe<K, V>[] stripes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        private Stripe(int capacity, @Nonnull LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+
+        int count = Math.clamp(Integer.highestOneBit(maxSize / MIN_STRIPE_SIZE), 1, MAX_STRIPES);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(Math.max(1, maxSize / count), evictions);
+        }
+    }
+
+    @Nonnull
+    private Stripe<K, V> stripe(@Nonnull Object key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    @Nullable
+    public V get(@Nonnull K key) {
+        Stripe<K, V> stripe = stripe(key);
+        V value;
+        synchronized (stripe) {
+            value = stripe.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    @Nullable
+    public V get(@Nonnull K key, @Nonnull Predicate<? super V> stillValid) {
+        Stripe<K, V> stripe = stripe(key);
+        V value;
+        synchronized (stripe) {
+            value = stripe.get(key);
+        }
+        if (value != null && stillValid.test(value)) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    @Nonnull
+    public V computeIfAbsent(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) return value;
+
+        V loaded = loader.apply(key);
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            V raced = stripe.putIfAbsent(key, loaded);
+            return raced != null ? raced : loaded;
+        }
+    }
+
+    public void put(@Nonnull K key, @Nonnull V value) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public void remove(@Nonnull K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long h = hits();
+        long total = h + misses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Nonnull
+    public String describe() {
+        return String.format("size=%d/%d stripes=%d hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+                size(), maxSize, stripes.length, hits(), misses(), evictions(), hitRate() * 100.0);
+    }
+}
@@ -0,0 +1,30 @@
+package com.supremosan.truebackpack.data;
+
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import com.supremosan.truebackpack.factory.BackpackItemFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BackpackInstanceIndexTest {
+
+    @Test
+    void locatesInstanceStampedAfterIndexWasBuilt() {
+        ItemContainer[] containers = new ItemContainer[BackpackInstanceIndex.CONTAINER_KINDS];
+        containers[BackpackInstanceIndex.ARMOR] = new SimpleItemContainer((short) 4);
+        containers[BackpackInstanceIndex.STORAGE] = new SimpleItemContainer((short) 9);
+        containers[BackpackInstanceIndex.BACKPACK] = new SimpleItemContainer((short) 9);
+        containers[BackpackInstanceIndex.HOTBAR] = new SimpleItemContainer((short) 9);
+
+        BackpackInstanceIndex index = new BackpackInstanceIndex();
+        assertEquals(BackpackInstanceIndex.NOT_FOUND, index.locate(containers, "missing"));
+
+        ItemStack stamped = BackpackItemFactory.createBackpackInstance(new ItemStack("Utility_Leather_Backpack"));
+        containers[BackpackInstanceIndex.ARMOR].setItemStackForSlot((short) 1, stamped);
+
+        assertEquals(BackpackInstanceIndex.pack(BackpackInstanceIndex.ARMOR, (short) 1),
+                index.locate(containers, BackpackItemFactory.getInstanceId(stamped)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.supremosan.truebackpack.factory;
+
+import com.supremosan.truebackpack.factory.BackpackContentsFormat.EncodedSlot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackpackContentsFormatTest {
+
+    @Test
+    void varIntRoundTripsAcrossByteBoundaries() {
+        int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE, -1};
+        for (int value : values) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BackpackContentsFormat.writeVarInt(out, value);
+            ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+            assertEquals(value, BackpackContentsFormat.readVarInt(in));
+            assertEquals(0, in.remaining());
+        }
+    }
+
+    @Test
+    void varIntUsesMinimalWidth() {
+        assertEquals(1, varIntLength(127));
+        assertEquals(2, varIntLength(128));
+        assertEquals(2, varIntLength(16383));
+        assertEquals(3, varIntLength(16384));
+    }
+
+    @Test
+    void sparseSlotsKeepTheirPositions() {
+        List<EncodedSlot> slots = new ArrayList<>(Arrays.asList(new EncodedSlot[200]));
+        slots.set(0, BackpackContentsFormat.simple("Ingredient_Stick", 12, 0, false, 0, false));
+        slots.set(130, BackpackContentsFormat.simple("Ingredient_Stick", 1, 0, false, 0, false));
+        slots.set(199, BackpackContentsFormat.simple("Tool_Pickaxe_Iron", 1, 300, true, 150, true));
+
+        List<EncodedSlot> decoded = roundTrip(slots);
+
+        assertEquals(200, decoded.size());
+        assertEquals(slots, decoded);
+        assertNull(decoded.get(1));
+        assertNull(decoded.get(198));
+        assertEquals(1, decoded.get(130).quantity());
+    }
+
+    @Test
+    void emptyContainerRoundTrips() {
+        List<EncodedSlot> slots = new ArrayList<>(Arrays.asList(new EncodedSlot[9]));
+        List<EncodedSlot> decoded = roundTrip(slots);
+        assertEquals(9, decoded.size());
+        assertTrue(decoded.stream().allMatch(slot -> slot == null));
+    }
+
+    @Test
+    void fractionalDurabilityIsStoredAsRawDouble() {
+        double durability = 87.33333333333333;
+        EncodedSlot slot = BackpackContentsFormat.simple("Weapon_Sword_Iron", 1, 120.5, true, durability, true);
+        assertTrue((slot.flags() & BackpackContentsFormat.FLAG_FRACTIONAL) != 0);
+
+        EncodedSlot decoded = roundTrip(List.of(slot)).get(0);
+
+        assertEquals(Double.doubleToRawLongBits(durability), Double.doubleToRawLongBits(decoded.durability()));
+        assertEquals(Double.doubleToRawLongBits(120.5), Double.doubleToRawLongBits(decoded.maxDurability()));
+    }
+
+    @Test
+    void wholeDurabilityStaysCompact() {
+        EncodedSlot slot = BackpackContentsFormat.simple("Weapon_Sword_Iron", 1, 200, true, 200, true);
+        assertEquals(0, slot.flags() & BackpackContentsFormat.FLAG_FRACTIONAL);
+        assertEquals(slot, roundTrip(List.of(slot)).get(0));
+    }
+
+    @Test
+    void documentFallbackPreservesBytes() {
+        byte[] document = new byte[300];
+        for (int i = 0; i < document.length; i++) document[i] = (byte) (i * 31);
+
+        List<EncodedSlot> slots = new ArrayList<>(Arrays.asList(new EncodedSlot[3]));
+        slots.set(1, BackpackContentsFormat.document("Utility_Backpack_Nested", 1, document));
+        slots.set(2, BackpackContentsFormat.simple("Utility_Backpack_Nested", 4, 0, false, 0, false));
+
+        List<EncodedSlot> decoded = roundTrip(slots);
+
+        assertTrue(decoded.get(1).isDocument());
+        assertArrayEquals(document, decoded.get(1).document());
+        assertEquals(slots.get(2), decoded.get(2));
+    }
+
+    @Test
+    void repeatedItemIdsShareOneDictionaryEntry() {
+        List<EncodedSlot> one = new ArrayList<>();
+        one.add(BackpackContentsFormat.simple("Ingredient_Fibre", 64, 0, false, 0, false));
+        List<EncodedSlot> many = new ArrayList<>();
+        for (int i = 0; i < 10; i++) many.add(BackpackContentsFormat.simple("Ingredient_Fibre", 64, 0, false, 0, false));
+
+        int perSlot = (BackpackContentsFormat.assemble(many).length - BackpackContentsFormat.assemble(one).length) / 9;
+        assertTrue(perSlot <= 4, "each repeated slot should cost at most 4 bytes, was " + perSlot);
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] data = BackpackContentsFormat.assemble(List.of());
+        data[0] = (byte) (BackpackContentsFormat.FORMAT_VERSION + 1);
+        assertThrows(IllegalStateException.class, () -> BackpackContentsFormat.disassemble(data));
+    }
+
+    private static List<EncodedSlot> roundTrip(List<EncodedSlot> slots) {
+        return BackpackContentsFormat.disassemble(BackpackContentsFormat.assemble(slots));
+    }
+
+    private static int varIntLength(int value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BackpackContentsFormat.writeVarInt(out, value);
+        return out.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.supremosan.truebackpack.listener;
+
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.container.SimpleItemContainer;
+import com.supremosan.truebackpack.data.BackpackInstanceIndex;
+import com.supremosan.truebackpack.data.BackpackPlayerState;
+import com.supremosan.truebackpack.data.BackpackPlayerState.PersistedContents;
+import com.supremosan.truebackpack.factory.BackpackContentsFormat.EncodedSlot;
+import com.supremosan.truebackpack.factory.BackpackItemFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class BackpackArmorListenerTest {
+
+    private static final short CAPACITY = 9;
+    private static final short CHEST_SLOT = 1;
+    private static final short HOTBAR_SLOT = 4;
+    private static final short EDITED_SLOT = 2;
+
+    private ItemContainer armor;
+    private ItemContainer storage;
+    private ItemContainer backpack;
+    private ItemContainer hotbar;
+    private ItemContainer[] containers;
+    private BackpackPlayerState state;
+    private String instanceId;
+
+    @BeforeEach
+    void equipEmptyBackpack() {
+        armor = new SimpleItemContainer((short) 4);
+        storage = new SimpleItemContainer(CAPACITY);
+        backpack = new SimpleItemContainer(CAPACITY);
+        hotbar = new SimpleItemContainer(CAPACITY);
+
+        containers = new ItemContainer[BackpackInstanceIndex.CONTAINER_KINDS];
+        containers[BackpackInstanceIndex.ARMOR] = armor;
+        containers[BackpackInstanceIndex.STORAGE] = storage;
+        containers[BackpackInstanceIndex.BACKPACK] = backpack;
+        containers[BackpackInstanceIndex.HOTBAR] = hotbar;
+
+        ItemStack equipped = BackpackItemFactory.createBackpackInstance(new ItemStack("Utility_Leather_Backpack"));
+        equipped = BackpackItemFactory.saveContents(equipped, Collections.nCopies(CAPACITY, null));
+        instanceId = BackpackItemFactory.getInstanceId(equipped);
+        armor.setItemStackForSlot(CHEST_SLOT, equipped);
+
+        state = new BackpackPlayerState();
+        state.setEquipped(instanceId, equipped.getItemId());
+    }
+
+    @Test
+    void unequipRightAfterEditKeepsTrackedContents() {
+        List<ItemStack> items = new ArrayList<>(Collections.nCopies(CAPACITY, null));
+        List<EncodedSlot> slots = new ArrayList<>(Collections.nCopies(CAPACITY, null));
+        state.setPersistedContents(new PersistedContents(instanceId, items, slots, armor.getItemStack(CHEST_SLOT)));
+
+        editAndUnequip();
+
+        assertEditedContentsSaved();
+    }
+
+    @Test
+    void unequipRightAfterEditKeepsUntrackedContents() {
+        editAndUnequip();
+
+        assertEditedContentsSaved();
+    }
+
+    private void editAndUnequip() {
+        backpack.setItemStackForSlot(EDITED_SLOT, new ItemStack("Ingredient_Stick", 5));
+        BitSet edited = new BitSet();
+        edited.set(EDITED_SLOT);
+        state.markDirty(edited);
+
+        ItemStack unequipped = armor.getItemStack(CHEST_SLOT);
+        armor.setItemStackForSlot(CHEST_SLOT, ItemStack.EMPTY);
+        hotbar.setItemStackForSlot(HOTBAR_SLOT, unequipped);
+
+        BackpackArmorListener.flushBeforeEquipChange(state, containers, backpack, instanceId);
+    }
+
+    private void assertEditedContentsSaved() {
+        assertFalse(state.isDirty());
+
+        ItemStack saved = hotbar.getItemStack(HOTBAR_SLOT);
+        assertEquals(instanceId, BackpackItemFactory.getInstanceId(saved));
+
+        ItemStack restored = BackpackItemFactory.loadContents(saved).get(EDITED_SLOT);
+        assertNotNull(restored);
+        assertEquals("Ingredient_Stick", restored.getItemId());
+        assertEquals(5, restored.getQuantity());
+    }
+}